@@ -0,0 +1,585 @@
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary write-ahead journal of the events of an admissions desk: PatientRecords
+ * admitted, dequeued, re-triaged, removed and seen, and queue clears. After a crash, replay() reads
+ * the journal back and rebuilds the waiting queue, the list of seen patients and the patient counter.
+ *
+ * Each event is written as one frame: a type byte, a fixed-size payload depending on the type, and a
+ * CRC32C checksum of both. An admitted src.PatientRecord is encoded with src.PatientRecordCodec, the
+ * other events only hold a CASE_NUMBER. A crash can leave a torn frame at the end of the file:
+ * replaying or reopening the journal stops at the first frame which is incomplete or whose checksum
+ * does not match, and truncates the file there.
+ *
+ * Events are encoded into an in-memory buffer and written to the file with a FileChannel by group
+ * commit: a single write and fsync covers all the events appended by all the threads since the
+ * previous one. When each event is forced to disk is set by the src.AdmissionsJournal.SyncPolicy of
+ * the journal:
+ * - PER_OPERATION: each append returns once its event is on disk. Concurrent appenders share fsyncs.
+ * - BATCHED: the events are written and forced once every batchSize events.
+ * - INTERVAL: a background thread writes and forces the pending events every interval milliseconds.
+ * With BATCHED and INTERVAL, the last events appended before a crash may be lost, but the journal
+ * always stays consistent. sync() forces the pending events on demand, and close() forces them all.
+ */
+public class AdmissionsJournal implements Closeable {
+
+    /**
+     * Policy deciding when the events appended to a src.AdmissionsJournal are forced to disk
+     */
+    public enum SyncPolicy {
+        /**
+         * Force each event before its append returns
+         */
+        PER_OPERATION,
+        /**
+         * Force the events once every batchSize events
+         */
+        BATCHED,
+        /**
+         * Force the pending events periodically, from a background thread
+         */
+        INTERVAL
+    }
+
+    private static final int MAGIC = 0x5043414A; // "PCAJ", first bytes of a journal file
+    private static final int VERSION = 1; // version of the journal format
+    private static final int HEADER_LENGTH = 8; // length of the magic number and the version
+
+    private static final byte ADD = 1; // a src.PatientRecord was admitted
+    private static final byte REMOVE_BEST = 2; // the best src.PatientRecord was dequeued
+    private static final byte SEE = 3; // a dequeued src.PatientRecord was seen
+    private static final byte CLEAR = 4; // the queue was cleared
+    private static final byte REMOVE = 5; // a waiting src.PatientRecord was removed or cancelled
+    private static final byte TRIAGE = 6; // a waiting src.PatientRecord was re-triaged
+    private static final int MAX_FRAME_LENGTH = 25; // length of the longest frame, an ADD frame
+    private static final int INITIAL_BUFFER_LENGTH = 64 * 1024; // initial length of the buffers
+
+    private final FileChannel channel; // channel appending to the journal file
+    private final SyncPolicy policy; // when the appended events are forced to disk
+    private final int batchSize; // number of events per fsync with the BATCHED policy
+    private final ReentrantLock appendLock; // guards pending and appended
+    private final ReentrantLock syncLock; // held by the thread writing and forcing the events
+    private final CRC32C checksum; // checksum of the frames, guarded by appendLock
+    private final ScheduledExecutorService syncThread; // syncs with the INTERVAL policy, or null
+    private ByteBuffer pending; // frames appended but not yet written, guarded by appendLock
+    private ByteBuffer writing; // frames being written, guarded by syncLock
+    private long appended; // number of events appended since the journal was opened
+    private int frameStart; // position in pending of the frame being appended
+    private volatile long durable; // number of events written and forced to disk
+    private volatile IOException failure; // error of the background sync thread, if any
+
+    /**
+     * Opens the journal stored in the given file for appending, creating it if it does not exist.
+     * A torn frame at the end of an existing journal is truncated.
+     *
+     * @param file           file of the journal
+     * @param policy         when the appended events are forced to disk
+     * @param batchSize      number of events per fsync with the BATCHED policy
+     * @param intervalMillis delay between two fsyncs with the INTERVAL policy, in milliseconds
+     * @throws IOException              if the file cannot be opened, or is not a journal
+     * @throws IllegalArgumentException with a descriptive error message if batchSize or
+     *                                  intervalMillis is not positive
+     */
+    public AdmissionsJournal(Path file, SyncPolicy policy, int batchSize, long intervalMillis)
+            throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size");
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid sync interval");
+        }
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.appendLock = new ReentrantLock();
+        this.syncLock = new ReentrantLock();
+        this.checksum = new CRC32C();
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_LENGTH);
+        this.writing = ByteBuffer.allocate(INITIAL_BUFFER_LENGTH);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+            } else {
+                channel.truncate(scan(channel, null));
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (policy == SyncPolicy.INTERVAL) {
+            this.syncThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "admissions-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncThread.scheduleWithFixedDelay(this::syncInBackground, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.syncThread = null;
+        }
+    }
+
+    /**
+     * Returns the policy deciding when the events of this journal are forced to disk
+     *
+     * @return the sync policy of this journal
+     */
+    public SyncPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Appends the admission of the given src.PatientRecord
+     *
+     * @param p src.PatientRecord added to the queue
+     * @throws NullPointerException if p is null
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordAdd(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        long event = begin(ADD);
+        try {
+            PatientRecordCodec.encode(pending, p);
+        } catch (Throwable e) {
+            abort();
+            throw e;
+        }
+        commit(event, 1 + PatientRecordCodec.RECORD_LENGTH);
+    }
+
+    /**
+     * Appends the removal of the given src.PatientRecord by removeBestRecord()
+     *
+     * @param p src.PatientRecord dequeued from the queue
+     * @throws NullPointerException if p is null
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordRemoveBest(PatientRecord p) {
+        appendCaseEvent(REMOVE_BEST, p);
+    }
+
+    /**
+     * Appends that the given dequeued src.PatientRecord has been seen
+     *
+     * @param p src.PatientRecord marked as seen
+     * @throws NullPointerException if p is null
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordSeen(PatientRecord p) {
+        appendCaseEvent(SEE, p);
+    }
+
+    /**
+     * Appends the removal of the given waiting src.PatientRecord by remove() or cancel()
+     *
+     * @param p src.PatientRecord removed from the queue
+     * @throws NullPointerException if p is null
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordRemove(PatientRecord p) {
+        appendCaseEvent(REMOVE, p);
+    }
+
+    /**
+     * Appends the new triage level of the given waiting src.PatientRecord, after updateTriage()
+     *
+     * @param p re-triaged src.PatientRecord
+     * @throws NullPointerException if p is null
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordTriage(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        byte ordinal = (byte) p.getTriage().ordinal();
+        long event = begin(TRIAGE);
+        pending.putLong(p.CASE_NUMBER).put(ordinal);
+        commit(event, 10);
+    }
+
+    /**
+     * Appends a clear() of the queue
+     *
+     * @throws UncheckedIOException if the event cannot be written
+     */
+    public void recordClear() {
+        long event = begin(CLEAR);
+        commit(event, 1);
+    }
+
+    /**
+     * Writes and forces to disk all the events appended so far
+     *
+     * @throws UncheckedIOException if the events cannot be written
+     */
+    public void sync() {
+        long target;
+        appendLock.lock();
+        try {
+            target = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        syncTo(target);
+    }
+
+    /**
+     * Forces all the appended events to disk, and closes this journal
+     *
+     * @throws IOException if the events cannot be written or the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncThread != null) {
+            syncThread.shutdown();
+        }
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            channel.close();
+            throw e.getCause();
+        }
+        channel.close();
+    }
+
+    /**
+     * Appends an event whose payload is the CASE_NUMBER of the given src.PatientRecord
+     *
+     * @param type type of the event
+     * @param p    src.PatientRecord the event is about
+     * @throws NullPointerException if p is null
+     */
+    private void appendCaseEvent(byte type, PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        long event = begin(type);
+        pending.putLong(p.CASE_NUMBER);
+        commit(event, 9);
+    }
+
+    /**
+     * Locks the pending buffer, makes room for a frame in it and writes the type of the event.
+     * Every call must be followed by commit(), or by abort() if the payload cannot be written.
+     *
+     * @param type type of the event
+     * @return the number of the event, counted from 1 since this journal was opened
+     */
+    private long begin(byte type) {
+        appendLock.lock();
+        if (pending.remaining() < MAX_FRAME_LENGTH) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        frameStart = pending.position();
+        pending.put(type);
+        return ++appended;
+    }
+
+    /**
+     * Drops the frame started by the last begin(), then unlocks the pending buffer
+     */
+    private void abort() {
+        try {
+            pending.position(frameStart);
+            appended--;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Completes the frame of an event with its checksum, unlocks the pending buffer, and forces the
+     * event to disk if the sync policy requires it
+     *
+     * @param event  number of the event
+     * @param length length of the frame without its checksum
+     */
+    private void commit(long event, int length) {
+        try {
+            checksum.reset();
+            checksum.update(pending.array(), pending.position() - length, length);
+            pending.putInt((int) checksum.getValue());
+        } finally {
+            appendLock.unlock();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if (policy == SyncPolicy.PER_OPERATION
+                || (policy == SyncPolicy.BATCHED && event % batchSize == 0)) {
+            syncTo(event);
+        }
+    }
+
+    /**
+     * Writes and forces to disk the events up to the given one, together with all the other events
+     * pending at that time (group commit). A thread finding its event already forced by another
+     * thread returns without any I/O.
+     *
+     * @param target number of the last event which must be on disk
+     * @throws UncheckedIOException if the events cannot be written
+     */
+    private void syncTo(long target) {
+        if (durable >= target) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable >= target) {
+                return;
+            }
+            long covered;
+            appendLock.lock();
+            try {
+                ByteBuffer frames = pending;
+                pending = writing;
+                writing = frames;
+                covered = appended;
+            } finally {
+                appendLock.unlock();
+            }
+            writing.flip();
+            while (writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            writing.clear();
+            channel.force(false);
+            durable = covered;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Periodic task of the INTERVAL policy: forces the pending events, and keeps the error if any,
+     * so that the next append reports it
+     */
+    private void syncInBackground() {
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            failure = e.getCause();
+        }
+    }
+
+    /**
+     * Rebuilds the state of an admissions desk from the journal stored in the given file. The events
+     * are applied on top of the PatientRecords already waiting in the given queue, for instance
+     * those restored from an src.AdmissionsSnapshot taken when the journal was started. The waiting
+     * PatientRecords are then put back into the queue at once with addAll(), which rebuilds the heap
+     * bottom-up rather than replaying every percolation. The newly seen PatientRecords are added to
+     * the given list, most recently seen first, and the patient counter is advanced past the last
+     * recovered src.PatientRecord. A torn frame at the end of the journal is truncated.
+     *
+     * @param file  file of the journal
+     * @param queue queue to add the waiting PatientRecords to
+     * @param seen  list to add the seen PatientRecords to
+     * @return the number of events replayed
+     * @throws IOException           if the file cannot be read, or is not a journal
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if the queue cannot hold all the waiting PatientRecords
+     */
+    public static long replay(Path file, PriorityCareAdmissions queue, List<PatientRecord> seen)
+            throws IOException {
+        Replay replay = new Replay();
+        for (PatientRecord p : queue) {
+            replay.waiting.put(p.CASE_NUMBER, p);
+        }
+        PatientRecord[] initial = replay.waiting.values().toArray(new PatientRecord[0]);
+        queue.clear(); // re-triage events modify the waiting PatientRecords
+        try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            input.truncate(scan(input, replay));
+        } catch (IOException e) {
+            queue.addAll(initial);
+            throw e;
+        }
+        queue.addAll(replay.waiting.values().toArray(new PatientRecord[0]));
+        List<PatientRecord> newlySeen = new ArrayList<PatientRecord>(replay.seen);
+        Collections.reverse(newlySeen);
+        seen.addAll(0, newlySeen);
+        PatientRecord.restoreCounter(replay.counter);
+        return replay.events;
+    }
+
+    /**
+     * State rebuilt while replaying a journal
+     */
+    private static class Replay {
+        private final LinkedHashMap<Long, PatientRecord> waiting; // waiting records, by CASE_NUMBER
+        private final HashMap<Long, PatientRecord> dequeued; // dequeued records not yet seen
+        private final List<PatientRecord> seen; // seen records, in the order they were seen
+        private int counter; // value of the patient counter after the last admitted record
+        private long events; // number of events replayed
+
+        /**
+         * Creates an empty replay state
+         */
+        private Replay() {
+            this.waiting = new LinkedHashMap<Long, PatientRecord>();
+            this.dequeued = new HashMap<Long, PatientRecord>();
+            this.seen = new ArrayList<PatientRecord>();
+        }
+
+        /**
+         * Applies one event of the journal
+         *
+         * @param type  type of the event
+         * @param frame buffer positioned at the payload of the event
+         */
+        private void apply(byte type, ByteBuffer frame) {
+            events++;
+            if (type == CLEAR) {
+                waiting.clear();
+                return;
+            }
+            if (type == ADD) {
+                PatientRecord p = PatientRecordCodec.decode(frame);
+                waiting.put(p.CASE_NUMBER, p);
+                counter = Math.max(counter, p.getArrivalOrder() + 1);
+                return;
+            }
+            long caseNumber = frame.getLong();
+            if (type == REMOVE_BEST) {
+                PatientRecord p = waiting.remove(caseNumber);
+                if (p != null) {
+                    dequeued.put(caseNumber, p);
+                }
+            } else if (type == SEE) {
+                PatientRecord p = dequeued.remove(caseNumber);
+                if (p != null) {
+                    p.seePatient();
+                    seen.add(p);
+                }
+            } else if (type == REMOVE) {
+                waiting.remove(caseNumber);
+            } else {
+                PatientRecord p = waiting.get(caseNumber);
+                TriageLevel triage = TriageLevel.values()[frame.get()];
+                if (p != null) {
+                    p.setTriage(triage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the frames of a journal from its beginning, checking the header and the checksum of each
+     * frame, and applies them to the given replay state
+     *
+     * @param input  channel reading the journal
+     * @param replay state to apply the frames to, or null to only check them
+     * @return the length of the valid part of the journal, up to the first torn or corrupt frame
+     * @throws IOException if the journal cannot be read or does not start with a valid header
+     */
+    private static long scan(FileChannel input, Replay replay) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_LENGTH);
+        buffer.limit(0); // empty, ready to be read
+        input.position(0);
+        readAtLeast(input, buffer, HEADER_LENGTH);
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION) {
+            throw new IOException("Not an admissions journal");
+        }
+        CRC32C crc = new CRC32C();
+        long valid = HEADER_LENGTH;
+        while (true) {
+            readAtLeast(input, buffer, MAX_FRAME_LENGTH);
+            if (!buffer.hasRemaining()) {
+                return valid;
+            }
+            int start = buffer.position();
+            byte type = buffer.get(start);
+            int length = frameLength(type);
+            if (length < 0 || buffer.remaining() < length + 4) {
+                return valid; // corrupt type, or frame torn at the end of the file
+            }
+            crc.reset();
+            crc.update(buffer.array(), start, length);
+            if (buffer.getInt(start + length) != (int) crc.getValue()) {
+                return valid;
+            }
+            if (replay != null) {
+                buffer.position(start + 1);
+                replay.apply(type, buffer);
+            }
+            buffer.position(start + length + 4);
+            valid += length + 4;
+        }
+    }
+
+    /**
+     * Refills the given buffer from the channel until it holds at least the given number of bytes
+     * or the end of the file is reached. The buffer is left ready to be read.
+     *
+     * @param input   channel to read
+     * @param buffer  buffer ready to be read, holding the bytes not consumed yet
+     * @param minimum number of bytes the buffer should hold
+     * @throws IOException if the channel cannot be read
+     */
+    private static void readAtLeast(FileChannel input, ByteBuffer buffer, int minimum)
+            throws IOException {
+        if (buffer.remaining() >= minimum) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < minimum && input.read(buffer) >= 0) {
+            // keep reading
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Returns the length of a frame of the given type, without its checksum
+     *
+     * @param type type of the event
+     * @return the length of the type and the payload, or -1 if the type is unknown
+     */
+    private static int frameLength(byte type) {
+        switch (type) {
+            case ADD:
+                return 1 + PatientRecordCodec.RECORD_LENGTH;
+            case REMOVE_BEST:
+            case SEE:
+            case REMOVE:
+                return 9;
+            case TRIAGE:
+                return 10;
+            case CLEAR:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package src;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Point-in-time copy of the state of an admissions desk: the PatientRecords waiting in its queue,
+ * the PatientRecords already seen, and the patient counter. A snapshot is saved to a compact binary
+ * file, and restored from it much faster than by replaying a long src.AdmissionsJournal.
+ *
+ * capture() only copies the arrays of the queue, in O(n) time, so intake pauses for the time of
+ * that copy only. Along with each src.PatientRecord, it records the two fields which can still
+ * change: its triage level and its seen flag. The other fields of a src.PatientRecord never change,
+ * so writeTo() encodes every src.PatientRecord exactly as it was at capture time, even when it runs
+ * on another thread while the queue keeps changing and PatientRecords are dequeued and seen. The
+ * file is written next to its destination, forced to disk, then atomically moved in place, so a
+ * crash never leaves a partial snapshot.
+ *
+ * The file holds a header (magic number, version, patient counter, number of waiting and of seen
+ * PatientRecords), the waiting PatientRecords in heap order, the seen PatientRecords in list order,
+ * all encoded with src.PatientRecordCodec, and a CRC32C checksum of everything before it.
+ * restore() maps the file in memory, checks it, decodes the PatientRecords and adds them to the
+ * queue with addAll(), which rebuilds the heap in O(n) time.
+ *
+ * To combine a snapshot with a journal, start a new journal when the snapshot is captured: after a
+ * crash, restore the snapshot, then replay the journal on top of it.
+ */
+public class AdmissionsSnapshot {
+    private static final int MAGIC = 0x50434153; // "PCAS", first bytes of a snapshot file
+    private static final int VERSION = 1; // version of the snapshot format
+    private static final int HEADER_LENGTH = 20; // magic, version, counter and the two counts
+    private static final int CHECKSUM_LENGTH = 4; // length of the trailing CRC32C checksum
+    private static final int RECORDS_PER_WRITE = 1 << 16; // records encoded per write to the file
+    private static final int RECORDS_PER_MAP =
+            Integer.MAX_VALUE / PatientRecordCodec.RECORD_LENGTH; // records per mapped region
+
+    private final PatientRecord[] waiting; // waiting PatientRecords, in heap order
+    private final byte[] waitingStates; // triage level and seen flag of each waiting record
+    private final PatientRecord[] seen; // PatientRecords already seen, in list order
+    private final byte[] seenStates; // triage level and seen flag of each seen record
+    private final int counter; // value of the patient counter at capture time
+
+    /**
+     * Creates a snapshot from copies of the state of an admissions desk, and records the triage
+     * level and seen flag of each src.PatientRecord. The caller must hold the locks of the queue.
+     *
+     * @param waiting     copy of the waiting PatientRecords
+     * @param waitingKeys copy of the priority keys of the waiting PatientRecords
+     * @param seen        list of the PatientRecords already seen, copied by this constructor
+     */
+    AdmissionsSnapshot(PatientRecord[] waiting, long[] waitingKeys, List<PatientRecord> seen) {
+        this.waiting = waiting;
+        this.waitingStates = new byte[waiting.length];
+        for (int i = 0; i < waiting.length; i++) {
+            waitingStates[i] = state((int) (waitingKeys[i] >>> 32), waiting[i].hasBeenSeen());
+        }
+        this.seen = seen.toArray(new PatientRecord[0]);
+        this.seenStates = new byte[this.seen.length];
+        for (int i = 0; i < this.seen.length; i++) {
+            PatientRecord p = this.seen[i];
+            seenStates[i] = state(p.getTriage().ordinal(), p.hasBeenSeen());
+        }
+        this.counter = PatientRecord.currentCounter();
+    }
+
+    /**
+     * Packs the triage level and the seen flag of a src.PatientRecord into one byte
+     *
+     * @param ordinal ordinal of the triage level
+     * @param seen    seen flag
+     * @return the ordinal shifted left by one bit, plus 1 if seen
+     */
+    private static byte state(int ordinal, boolean seen) {
+        return (byte) (ordinal << 1 | (seen ? 1 : 0));
+    }
+
+    /**
+     * Captures the state of an admissions desk. Only the arrays of the queue are copied, the
+     * PatientRecords are shared, and their mutable fields are recorded.
+     *
+     * @param queue queue of the waiting PatientRecords
+     * @param seen  list of the PatientRecords already seen
+     * @return a snapshot of queue, seen and the patient counter
+     */
+    public static AdmissionsSnapshot capture(PriorityCareAdmissions queue,
+                                             List<PatientRecord> seen) {
+        PatientRecord[] records = new PatientRecord[queue.size()];
+        long[] keys = new long[records.length];
+        queue.copyRecords(records, keys, 0);
+        return new AdmissionsSnapshot(records, keys, seen);
+    }
+
+    /**
+     * Captures the state of an admissions desk served by a src.ConcurrentPriorityCareAdmissions
+     * queue. All its stripes are locked for the time of the array copies only.
+     *
+     * @param queue queue of the waiting PatientRecords
+     * @param seen  list of the PatientRecords already seen, which must not change meanwhile
+     * @return a snapshot of queue, seen and the patient counter
+     */
+    public static AdmissionsSnapshot capture(ConcurrentPriorityCareAdmissions queue,
+                                             List<PatientRecord> seen) {
+        return queue.capture(seen);
+    }
+
+    /**
+     * Returns the number of waiting PatientRecords in this snapshot
+     *
+     * @return the number of waiting PatientRecords
+     */
+    public int waitingCount() {
+        return waiting.length;
+    }
+
+    /**
+     * Returns the number of seen PatientRecords in this snapshot
+     *
+     * @return the number of seen PatientRecords
+     */
+    public int seenCount() {
+        return seen.length;
+    }
+
+    /**
+     * Writes this snapshot to the given file, replacing it atomically if it exists
+     *
+     * @param file path of the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(HEADER_LENGTH + CHECKSUM_LENGTH,
+                RECORDS_PER_WRITE * PatientRecordCodec.RECORD_LENGTH));
+        try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(counter).putInt(waiting.length)
+                    .putInt(seen.length);
+            encode(waiting, waitingStates, output, buffer, checksum);
+            encode(seen, seenStates, output, buffer, checksum);
+            flush(output, buffer, checksum);
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            output.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Encodes PatientRecords with their triage level and seen flag at capture time, flushing the
+     * buffer to the file whenever it is full
+     *
+     * @param records  PatientRecords to encode
+     * @param states   triage level and seen flag of each src.PatientRecord, packed by state()
+     * @param output   channel of the file
+     * @param buffer   buffer holding the bytes to write
+     * @param checksum checksum of the bytes written so far
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void encode(PatientRecord[] records, byte[] states, FileChannel output,
+                               ByteBuffer buffer, CRC32C checksum) throws IOException {
+        for (int i = 0; i < records.length; i++) {
+            if (buffer.remaining() < PatientRecordCodec.RECORD_LENGTH) {
+                flush(output, buffer, checksum);
+            }
+            PatientRecord p = records[i];
+            PatientRecordCodec.encode(buffer, p.CASE_NUMBER, p.getGender(), p.getAge(),
+                    states[i] >> 1, p.getArrivalOrder(), (states[i] & 1) != 0);
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the file and adds it to the checksum, then clears the
+     * buffer
+     *
+     * @param output   channel of the file
+     * @param buffer   buffer holding the bytes to write
+     * @param checksum checksum of the bytes written so far
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void flush(FileChannel output, ByteBuffer buffer, CRC32C checksum)
+            throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Restores the snapshot saved in the given file: its waiting PatientRecords are added to the
+     * queue, its seen PatientRecords are appended to the list, and the patient counter is advanced
+     * to its value at capture time. The file is checked completely before the queue is modified.
+     *
+     * @param file  path of the snapshot file
+     * @param queue queue to add the waiting PatientRecords to, usually empty
+     * @param seen  list to append the seen PatientRecords to
+     * @return the number of waiting PatientRecords restored
+     * @throws IOException           if the file cannot be read, is not a snapshot file, or is
+     *                               corrupted
+     * @throws IllegalStateException if the queue cannot hold the waiting PatientRecords
+     */
+    public static int restore(Path file, PriorityCareAdmissions queue, List<PatientRecord> seen)
+            throws IOException {
+        PatientRecord[] waiting;
+        PatientRecord[] seenRecords;
+        int counter;
+        try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = input.size();
+            if (length < HEADER_LENGTH + CHECKSUM_LENGTH) {
+                throw new IOException("Invalid snapshot file: " + file);
+            }
+            CRC32C checksum = new CRC32C();
+            ByteBuffer header = input.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            checksum.update(header.duplicate());
+            counter = header.getInt(8);
+            int waitingCount = header.getInt(12);
+            int seenCount = header.getInt(16);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || waitingCount < 0
+                    || seenCount < 0 || length != HEADER_LENGTH + CHECKSUM_LENGTH
+                    + ((long) waitingCount + seenCount) * PatientRecordCodec.RECORD_LENGTH) {
+                throw new IOException("Invalid snapshot file: " + file);
+            }
+            waiting = new PatientRecord[waitingCount];
+            seenRecords = new PatientRecord[seenCount];
+            long position = HEADER_LENGTH;
+            position = decode(input, position, waiting, checksum);
+            position = decode(input, position, seenRecords, checksum);
+            ByteBuffer trailer = input.map(FileChannel.MapMode.READ_ONLY, position,
+                    CHECKSUM_LENGTH);
+            if (trailer.getInt() != (int) checksum.getValue()) {
+                throw new IOException("Corrupted snapshot file: " + file);
+            }
+        }
+        queue.addAll(waiting);
+        seen.addAll(Arrays.asList(seenRecords));
+        PatientRecord.restoreCounter(counter);
+        return waiting.length;
+    }
+
+    /**
+     * Decodes consecutive PatientRecords of a snapshot file, mapping the file in regions of at most
+     * RECORDS_PER_MAP PatientRecords
+     *
+     * @param input    channel of the snapshot file
+     * @param position position in the file of the first src.PatientRecord
+     * @param records  array to fill with the decoded PatientRecords
+     * @param checksum checksum of the bytes read so far
+     * @return the position in the file following the last src.PatientRecord
+     * @throws IOException if the file cannot be read or holds an invalid src.PatientRecord
+     */
+    private static long decode(FileChannel input, long position, PatientRecord[] records,
+                               CRC32C checksum) throws IOException {
+        for (int first = 0; first < records.length; first += RECORDS_PER_MAP) {
+            int count = Math.min(RECORDS_PER_MAP, records.length - first);
+            MappedByteBuffer region = input.map(FileChannel.MapMode.READ_ONLY, position,
+                    (long) count * PatientRecordCodec.RECORD_LENGTH);
+            checksum.update(region.duplicate());
+            try {
+                for (int i = first; i < first + count; i++) {
+                    records[i] = PatientRecordCodec.decode(region);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupted snapshot file", e);
+            }
+            position += region.capacity();
+        }
+        return position;
+    }
+}
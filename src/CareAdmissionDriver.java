@@ -1,5 +1,9 @@
 package src;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.util.ArrayList;
 
@@ -16,28 +20,56 @@ public class CareAdmissionDriver {
     private PriorityCareAdmissions queue; // priority queue storing the patient records of unseen
     private ArrayList<PatientRecord> seenPatients; // list of seen patients
     private Scanner scanner; // scanner to read user input command lines
+    private AdmissionsJournal journal; // journal of the admissions desk, or null if not journaled
 
 
     /**
-     * Creates and initializes a src.CareAdmissionDriver object
+     * Creates and initializes a src.CareAdmissionDriver object. The admission queue doubles its
+     * capacity whenever it is full, so that no patient is ever turned away.
      *
-     * @param capacity capacity of the admission queue
+     * @param capacity initial capacity of the admission queue
      * @throws IllegalArgumentException if capacity is negative
      *
      */
     public CareAdmissionDriver(int capacity) {
-        queue = new PriorityCareAdmissions(capacity);
+        queue = new PriorityCareAdmissions(capacity, 2, 2.0, PriorityCareAdmissions.MAX_CAPACITY);
         scanner = new Scanner(System.in);
         seenPatients = new ArrayList<PatientRecord>();
     }
 
+    /**
+     * Creates and initializes a src.CareAdmissionDriver object whose events are recorded in the
+     * given journal file. If the file already exists, the waiting and seen patients it records are
+     * recovered first, for instance after a crash. Each event is forced to disk before the command
+     * completes.
+     *
+     * @param capacity    initial capacity of the admission queue
+     * @param journalFile file of the src.AdmissionsJournal of this application
+     * @throws IllegalArgumentException if capacity is negative
+     * @throws IOException              if the journal cannot be read or opened
+     */
+    public CareAdmissionDriver(int capacity, Path journalFile) throws IOException {
+        this(capacity);
+        if (Files.exists(journalFile)) {
+            AdmissionsJournal.replay(journalFile, queue, seenPatients);
+        }
+        journal = new AdmissionsJournal(journalFile, AdmissionsJournal.SyncPolicy.PER_OPERATION, 1,
+                1000);
+    }
+
     /**
      * Main method that launches this driver application
      *
-     * @param args list of input arguments if any
+     * @param args list of input arguments if any: the path of a journal file to recover from and to
+     *             record the events of this application in
+     * @throws IOException if the journal cannot be read or opened
      */
-    public static void main(String[] args) {
-        new CareAdmissionDriver(20).runApplication();
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            new CareAdmissionDriver(20, Paths.get(args[0])).runApplication();
+        } else {
+            new CareAdmissionDriver(20).runApplication();
+        }
     }
 
 
@@ -48,6 +80,13 @@ public class CareAdmissionDriver {
         System.out.println(WELCOME_MSG);
         processUserCommands();
         scanner.close();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
         System.out.println(GOOD_BYE_MSG);
     }
 
@@ -58,7 +97,7 @@ public class CareAdmissionDriver {
         System.out.println("\n==================== MENU ====================");
         System.out.println("Enter one of the following options:");
         System.out.println("[1 <age> <M/F/X> <RED/YELLOW/GREEN>] Add a new patient record");
-        System.out.println("[2] Show next patient");
+        System.out.println("[2 <k>] Show next patient, or next k patients");
         System.out.println("[3] See next patient");
         System.out.println("[4] List all unseen patient records");
         System.out.println("[5] List seen patients");
@@ -87,6 +126,9 @@ public class CareAdmissionDriver {
                     TriageLevel triage = TriageLevel.valueOf(commands[3]);
                     PatientRecord somePatient = new PatientRecord(gender, age, triage);
                     queue.addPatient(somePatient);
+                    if (journal != null) {
+                        journal.recordAdd(somePatient);
+                    }
 
                 }
             } catch (NumberFormatException e) {
@@ -100,6 +142,26 @@ public class CareAdmissionDriver {
 
     }
 
+    /**
+     * Reads and processes user command line to show the next patient record, or the next k ones
+     *
+     * @param commandLine user command line to show the next patient records
+     */
+    private void showNextPatients(String commandLine) {
+        String[] commands = commandLine.trim().split(" "); // split user command
+        if (commands.length < 2) {
+            System.out.println(queue.peek());
+            return;
+        }
+        try {
+            for (PatientRecord p : queue.peek(Integer.parseInt(commands[1]))) {
+                System.out.println(p);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(SYNTAX_ERROR_MSG + " Invalid number of patients!");
+        }
+    }
+
     /**
      * Reads and processes user command lines
      */
@@ -116,18 +178,25 @@ public class CareAdmissionDriver {
                     case '1': // [1 <age> <M/F/X> <RED/YELLOW/GREEN>] Add a new patient record
                         this.addPatientRecord(command);
                         break;
-                    case '2': // [2] Show the next patient record
-                        System.out.println(queue.peek());
+                    case '2': // [2 <k>] Show the next patient record, or the next k ones
+                        this.showNextPatients(command);
                         break;
                     case '3': // [3] See next Patient
                         PatientRecord nextPatient = queue.removeBestRecord();// update this
+                        if (journal != null) {
+                            journal.recordRemoveBest(nextPatient);
+                        }
                         nextPatient.seePatient();
+                        if (journal != null) {
+                            journal.recordSeen(nextPatient);
+                        }
                         seenPatients.add(0, nextPatient);
                         System.out.println(nextPatient);
                         break;
                     case '4': // [4] Print the list of unseen patient records
                         System.out.println("List of unseen patients:");
-                        System.out.println(this.queue.toString());
+                        this.queue.writeTo(System.out);
+                        System.out.println();
                         break;
                     case '5': // [5] Print list of seen Patients
                         System.out.println("List of seen patients:");
@@ -138,6 +207,9 @@ public class CareAdmissionDriver {
                     case '6': // [6] Clear the Care Admission Queue
                         System.out.println("Sorry! We are closed due to out of control circumstances!");
                         queue.clear();
+                        if (journal != null) {
+                            journal.recordClear();
+                        }
                         break;
                     default:
                         System.out.println(SYNTAX_ERROR_MSG);
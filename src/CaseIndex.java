@@ -0,0 +1,196 @@
+package src;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from CASE_NUMBER to an index of an array-heap, used by
+ * src.PriorityCareAdmissions to locate its waiting PatientRecords in O(1) time. Keys (long) and
+ * values (int) are stored in two parallel primitive arrays, so that no key or value is ever boxed.
+ *
+ * Collisions are resolved by linear probing, and removals shift the following entries of the probe
+ * sequence back, so the table never holds deleted markers. The table doubles whenever it becomes
+ * half full.
+ */
+class CaseIndex {
+    private static final int INITIAL_LENGTH = 16; // initial length of the table, a power of two
+    private static final long[] NO_CASE_NUMBERS = new long[0]; // keys of an unallocated table
+    private static final int[] NO_SLOTS = new int[0]; // slots of an unallocated table
+
+    private long[] caseNumbers; // keys of the table
+    private int[] slots; // slots[i] is 1 + the value mapped to caseNumbers[i], or 0 if i is free
+    private int size; // number of keys in the table
+
+    /**
+     * Creates a new empty src.CaseIndex. Its table is only allocated when the first CASE_NUMBER is
+     * added.
+     */
+    CaseIndex() {
+        this.caseNumbers = NO_CASE_NUMBERS;
+        this.slots = NO_SLOTS;
+    }
+
+    /**
+     * Creates a new src.CaseIndex holding the same mappings as the given one
+     *
+     * @param other src.CaseIndex to copy
+     */
+    CaseIndex(CaseIndex other) {
+        this.caseNumbers = Arrays.copyOf(other.caseNumbers, other.caseNumbers.length);
+        this.slots = Arrays.copyOf(other.slots, other.slots.length);
+        this.size = other.size;
+    }
+
+    /**
+     * Returns the number of CASE_NUMBERs in this index
+     *
+     * @return the number of CASE_NUMBERs in this index
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value mapped to the given CASE_NUMBER
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the value mapped to caseNumber, or -1 if it is not in this index
+     */
+    int get(long caseNumber) {
+        if (size == 0) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int i = hash(caseNumber) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (caseNumbers[i] == caseNumber) {
+                return slots[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the given CASE_NUMBER to the given value, replacing its previous value if any
+     *
+     * @param caseNumber CASE_NUMBER to map
+     * @param value      value to map it to, a non-negative integer
+     */
+    void put(long caseNumber, int value) {
+        if (slots.length == 0) {
+            rehash(INITIAL_LENGTH);
+        }
+        int mask = slots.length - 1;
+        int i = hash(caseNumber) & mask;
+        while (slots[i] != 0) {
+            if (caseNumbers[i] == caseNumber) {
+                slots[i] = value + 1;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        caseNumbers[i] = caseNumber;
+        slots[i] = value + 1;
+        size++;
+        if (2 * size > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    /**
+     * Grows the table so that it can hold the given number of CASE_NUMBERs without rehashing again
+     *
+     * @param count number of CASE_NUMBERs this index should be able to hold
+     */
+    void ensureCapacity(int count) {
+        int length = Math.max(slots.length, INITIAL_LENGTH);
+        while (2L * count > length) {
+            length *= 2;
+        }
+        if (length != slots.length) {
+            rehash(length);
+        }
+    }
+
+    /**
+     * Removes the given CASE_NUMBER from this index, if it is mapped to the given value. The
+     * entries following it in its probe sequence are shifted back to fill the gap.
+     *
+     * @param caseNumber CASE_NUMBER to remove
+     * @param value      value caseNumber is expected to be mapped to
+     * @return {@code true} if caseNumber was mapped to value and has been removed
+     */
+    boolean remove(long caseNumber, int value) {
+        if (size == 0) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        int i = hash(caseNumber) & mask;
+        while (slots[i] != 0 && caseNumbers[i] != caseNumber) {
+            i = (i + 1) & mask;
+        }
+        if (slots[i] != value + 1) {
+            return false;
+        }
+
+        // shift back the following entries which cannot be found anymore past the gap at i
+        int gap = i;
+        for (int j = (gap + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int home = hash(caseNumbers[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                caseNumbers[gap] = caseNumbers[j];
+                slots[gap] = slots[j];
+                gap = j;
+            }
+        }
+        slots[gap] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all the CASE_NUMBERs from this index in O(1) time. A table grown past its initial
+     * length is released rather than cleared, and allocated again when needed.
+     */
+    void clear() {
+        if (slots.length > INITIAL_LENGTH) {
+            caseNumbers = NO_CASE_NUMBERS;
+            slots = NO_SLOTS;
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Moves all the entries of this index to a new table of the given length
+     *
+     * @param length length of the new table, a power of two
+     */
+    private void rehash(int length) {
+        long[] oldCaseNumbers = caseNumbers;
+        int[] oldSlots = slots;
+        caseNumbers = new long[length];
+        slots = new int[length];
+        int mask = length - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] != 0) {
+                int i = hash(oldCaseNumbers[j]) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                caseNumbers[i] = oldCaseNumbers[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a CASE_NUMBER, whose low digits are sequential, over the whole table
+     *
+     * @param caseNumber CASE_NUMBER to hash
+     * @return the hash of caseNumber
+     */
+    static int hash(long caseNumber) {
+        long h = caseNumber * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,562 @@
+package src;
+
+import java.util.Arrays;
+
+/**
+ * Census of the priority keys of the PatientRecords waiting in a src.PriorityCareAdmissions queue,
+ * used to answer census queries without scanning the heap. It keeps the number of waiting
+ * PatientRecords of each triage level, updated in O(1) time, and the keys of each triage level in
+ * a first-in first-out array sorted by key, whose front is the oldest arrival of the level. Keys
+ * mostly arrive in order within a level, so they are appended in O(1) amortized time; a key
+ * arriving out of order, for instance a re-triaged src.PatientRecord, is inserted at its place by a
+ * binary search, shifting the younger keys. A removed key is only marked as removed, after a binary
+ * search, and dropped once it reaches the front, so the oldest arrival of a level is read in O(1)
+ * amortized time, without ever searching the heap.
+ *
+ * Optionally, the index also keeps the keys in order, so that the number of keys smaller than a
+ * given key, which is the rank of a src.PatientRecord in the queue, is counted in O(log n) time.
+ * The ordered keys are only built on first use, and then cost O(log n) time per addition and
+ * removal. They are stored in a treap: a binary search tree ordered by key, which is also a
+ * max-heap on random node weights, so that it stays balanced with high probability. Each node
+ * stores the number of keys in its subtree, and equal keys share one node holding their
+ * multiplicity. Nodes are stored in parallel primitive arrays and indexed from 1, index 0 standing
+ * for an empty subtree. Freed nodes are chained through the left array and reused.
+ */
+class CensusIndex {
+    private static final int INITIAL_LENGTH = 16; // initial length of the node arrays
+    private static final int NIL = 0; // index of the empty subtree
+    private static final long[] NO_KEYS = new long[0]; // node keys of an unallocated treap
+    private static final int[] NO_NODES = new int[0]; // node fields of an unallocated treap
+    private static final boolean[] NO_FLAGS = new boolean[0]; // flags of an unallocated level
+
+    /**
+     * Oldest key of a triage level having no keys
+     */
+    static final long NONE = -1;
+
+    private final int[] levelCounts; // number of keys of each triage level, indexed by ordinal
+    private final Arrivals[] arrivals; // keys of each triage level by order of arrival
+    private boolean ordered; // true if the keys are also kept in the treap
+    private long[] nodeKeys; // priority key of each node
+    private int[] left; // left child of each node, or next free node of a freed node
+    private int[] right; // right child of each node
+    private int[] weights; // random weight of each node, greater than the weights of its children
+    private int[] multiplicities; // number of occurrences of the key of each node
+    private int[] subtreeSizes; // number of occurrences of all the keys in the subtree of each node
+    private int root; // root node of the treap
+    private int nodeCount; // number of nodes ever allocated, i.e. the highest node index in use
+    private int freeNodes; // first node of the chain of freed nodes
+    private int seed; // state of the xorshift generator of node weights
+
+    /**
+     * Creates a new empty src.CensusIndex, which does not keep its keys in order until
+     * enableOrder() is called
+     */
+    CensusIndex() {
+        this.levelCounts = new int[TriageLevel.values().length];
+        this.arrivals = new Arrivals[levelCounts.length];
+        for (int level = 0; level < arrivals.length; level++) {
+            arrivals[level] = new Arrivals();
+        }
+        releaseNodes();
+        this.seed = 0x2545F491;
+    }
+
+    /**
+     * Creates a new src.CensusIndex holding the same keys as the given one
+     *
+     * @param other src.CensusIndex to copy
+     */
+    CensusIndex(CensusIndex other) {
+        this.levelCounts = Arrays.copyOf(other.levelCounts, other.levelCounts.length);
+        this.arrivals = new Arrivals[other.arrivals.length];
+        for (int level = 0; level < arrivals.length; level++) {
+            arrivals[level] = new Arrivals(other.arrivals[level]);
+        }
+        this.ordered = other.ordered;
+        this.nodeKeys = Arrays.copyOf(other.nodeKeys, other.nodeKeys.length);
+        this.left = Arrays.copyOf(other.left, other.left.length);
+        this.right = Arrays.copyOf(other.right, other.right.length);
+        this.weights = Arrays.copyOf(other.weights, other.weights.length);
+        this.multiplicities = Arrays.copyOf(other.multiplicities, other.multiplicities.length);
+        this.subtreeSizes = Arrays.copyOf(other.subtreeSizes, other.subtreeSizes.length);
+        this.root = other.root;
+        this.nodeCount = other.nodeCount;
+        this.freeNodes = other.freeNodes;
+        this.seed = other.seed;
+    }
+
+    /**
+     * Returns the number of keys of the given triage level
+     *
+     * @param level ordinal of a triage level
+     * @return the number of keys of this triage level
+     */
+    int count(int level) {
+        return levelCounts[level];
+    }
+
+    /**
+     * Returns the smallest key of the given triage level, which is the key of the
+     * src.PatientRecord of this level having the oldest order of arrival
+     *
+     * @param level ordinal of a triage level
+     * @return the smallest key of this triage level, or NONE if there is no such key
+     */
+    long oldestKey(int level) {
+        Arrivals waiting = arrivals[level];
+        return waiting.head == waiting.tail ? NONE : waiting.keys[waiting.head];
+    }
+
+    /**
+     * Tells whether this index keeps its keys in order, so that countBelow() can be called
+     *
+     * @return true if the keys are kept in order
+     */
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Starts keeping the keys of this index in order. The given keys must be all the keys of this
+     * index; they are sorted and the treap is built in one pass.
+     *
+     * @param keys array of all the priority keys of this index
+     * @param from index of the first key, inclusive
+     * @param to   index of the last key, exclusive
+     */
+    void enableOrder(long[] keys, int from, int to) {
+        ordered = true;
+        build(keys, from, to);
+    }
+
+    /**
+     * Returns the number of keys smaller than the given key. Since priority keys sort like
+     * PatientRecords, this is the number of PatientRecords which will be dequeued before the one
+     * having the given key. The keys must be kept in order.
+     *
+     * @param key priority key of a src.PatientRecord
+     * @return the number of keys of this index smaller than key
+     */
+    int countBelow(long key) {
+        int count = 0;
+        for (int node = root; node != NIL; ) {
+            if (key <= nodeKeys[node]) {
+                node = left[node];
+            } else {
+                count += subtreeSizes[left[node]] + multiplicities[node];
+                node = right[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds one occurrence of the given key
+     *
+     * @param key priority key of a src.PatientRecord
+     */
+    void add(long key) {
+        count(key);
+        if (ordered) {
+            root = insert(root, key);
+        }
+    }
+
+    /**
+     * Adds one occurrence of each of the given keys. When the keys are kept in order and this index
+     * is empty, the treap is built in one pass rather than with one descent from the root per key.
+     *
+     * @param keys array of priority keys
+     * @param from index of the first key to add, inclusive
+     * @param to   index of the last key to add, exclusive
+     */
+    void addAll(long[] keys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            count(keys[i]);
+        }
+        if (!ordered) {
+            return;
+        }
+        if (root != NIL || to - from < 2) {
+            for (int i = from; i < to; i++) {
+                root = insert(root, keys[i]);
+            }
+        } else {
+            build(keys, from, to);
+        }
+    }
+
+    /**
+     * Counts one more key of its triage level, and adds it to the arrivals of this level
+     *
+     * @param key priority key of a src.PatientRecord
+     */
+    private void count(long key) {
+        int level = (int) (key >>> 32);
+        levelCounts[level]++;
+        arrivals[level].add(key);
+    }
+
+    /**
+     * Builds the treap of the given keys, which must be empty. The keys are sorted and the treap is
+     * built in a single pass along its right spine, in O(n log n) time for the sort and O(n) time
+     * for the build.
+     *
+     * @param keys array of priority keys
+     * @param from index of the first key, inclusive
+     * @param to   index of the last key, exclusive
+     */
+    private void build(long[] keys, int from, int to) {
+        long[] sorted = Arrays.copyOfRange(keys, from, to);
+        Arrays.sort(sorted);
+        int[] spine = new int[sorted.length]; // right spine of the treap, from the root down
+        int depth = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            long key = sorted[i];
+            if (i > 0 && key == sorted[i - 1]) {
+                multiplicities[spine[depth - 1]]++; // the last node is the bottom of the spine
+                continue;
+            }
+            int node = newNode(key);
+            int lighter = NIL;
+            while (depth > 0 && weights[spine[depth - 1]] < weights[node]) {
+                lighter = spine[--depth];
+                updateSize(lighter); // its subtree is complete
+            }
+            left[node] = lighter;
+            if (depth > 0) {
+                right[spine[depth - 1]] = node;
+            }
+            spine[depth++] = node;
+        }
+        while (depth > 0) {
+            updateSize(spine[--depth]);
+        }
+        root = sorted.length == 0 ? NIL : spine[0];
+    }
+
+    /**
+     * Removes one occurrence of the given key, which must be in this index
+     *
+     * @param key priority key of a src.PatientRecord
+     */
+    void remove(long key) {
+        if (ordered) {
+            root = delete(root, key);
+        }
+        int level = (int) (key >>> 32);
+        levelCounts[level]--;
+        arrivals[level].remove(key);
+    }
+
+    /**
+     * Removes all the keys from this index in O(1) time. Node and arrival arrays grown past their
+     * initial length are released, and allocated again when needed. Ordered keys stay ordered.
+     */
+    void clear() {
+        Arrays.fill(levelCounts, 0);
+        for (Arrivals level : arrivals) {
+            level.clear();
+        }
+        if (nodeKeys.length > INITIAL_LENGTH) {
+            releaseNodes();
+        }
+        root = NIL;
+        nodeCount = 0;
+        freeNodes = NIL;
+    }
+
+    /**
+     * Replaces the node arrays with empty ones, which are reallocated when a node is next needed
+     */
+    private void releaseNodes() {
+        nodeKeys = NO_KEYS;
+        left = NO_NODES;
+        right = NO_NODES;
+        weights = NO_NODES;
+        multiplicities = NO_NODES;
+        subtreeSizes = NO_NODES;
+    }
+
+    /**
+     * Inserts one occurrence of a key in the given subtree
+     *
+     * @param node root of the subtree
+     * @param key  key to insert
+     * @return the new root of the subtree
+     */
+    private int insert(int node, long key) {
+        if (node == NIL) {
+            return newNode(key);
+        }
+        subtreeSizes[node]++;
+        if (key == nodeKeys[node]) {
+            multiplicities[node]++;
+        } else if (key < nodeKeys[node]) {
+            int child = insert(left[node], key); // may reallocate the node arrays
+            left[node] = child;
+            if (weights[child] > weights[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            int child = insert(right[node], key); // may reallocate the node arrays
+            right[node] = child;
+            if (weights[child] > weights[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Deletes one occurrence of a key from the given subtree. A node whose last occurrence is deleted
+     * is rotated down, below its heavier child, until it has at most one child, then unlinked.
+     *
+     * @param node root of the subtree
+     * @param key  key to delete
+     * @return the new root of the subtree
+     */
+    private int delete(int node, long key) {
+        if (node == NIL) {
+            throw new IllegalStateException("Key missing from the census: " + key);
+        }
+        if (key < nodeKeys[node]) {
+            left[node] = delete(left[node], key);
+            subtreeSizes[node]--;
+        } else if (key > nodeKeys[node]) {
+            right[node] = delete(right[node], key);
+            subtreeSizes[node]--;
+        } else if (multiplicities[node] > 1) {
+            multiplicities[node]--;
+            subtreeSizes[node]--;
+        } else if (left[node] == NIL || right[node] == NIL) {
+            int child = left[node] == NIL ? right[node] : left[node];
+            freeNode(node);
+            return child;
+        } else if (weights[left[node]] > weights[right[node]]) {
+            node = rotateRight(node);
+            right[node] = delete(right[node], key);
+            subtreeSizes[node]--;
+        } else {
+            node = rotateLeft(node);
+            left[node] = delete(left[node], key);
+            subtreeSizes[node]--;
+        }
+        return node;
+    }
+
+    /**
+     * Rotates the given subtree to the right, so that its left child becomes its root
+     *
+     * @param node root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        subtreeSizes[pivot] = subtreeSizes[node];
+        updateSize(node);
+        return pivot;
+    }
+
+    /**
+     * Rotates the given subtree to the left, so that its right child becomes its root
+     *
+     * @param node root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        subtreeSizes[pivot] = subtreeSizes[node];
+        updateSize(node);
+        return pivot;
+    }
+
+    /**
+     * Allocates a leaf node holding one occurrence of the given key, reusing a freed node if any
+     *
+     * @param key key of the new node
+     * @return the index of the new node
+     */
+    private int newNode(long key) {
+        int node;
+        if (freeNodes != NIL) {
+            node = freeNodes;
+            freeNodes = left[node];
+        } else {
+            node = ++nodeCount;
+            if (node >= nodeKeys.length) {
+                int length = Math.max(INITIAL_LENGTH, nodeKeys.length * 2);
+                nodeKeys = Arrays.copyOf(nodeKeys, length);
+                left = Arrays.copyOf(left, length);
+                right = Arrays.copyOf(right, length);
+                weights = Arrays.copyOf(weights, length);
+                multiplicities = Arrays.copyOf(multiplicities, length);
+                subtreeSizes = Arrays.copyOf(subtreeSizes, length);
+            }
+        }
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        nodeKeys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        weights[node] = seed;
+        multiplicities[node] = 1;
+        subtreeSizes[node] = 1;
+        return node;
+    }
+
+    /**
+     * Recomputes the subtree size of the given node from the sizes of its children
+     *
+     * @param node index of the node to update
+     */
+    private void updateSize(int node) {
+        subtreeSizes[node] = subtreeSizes[left[node]] + multiplicities[node]
+                + subtreeSizes[right[node]];
+    }
+
+    /**
+     * Adds the given node to the chain of freed nodes
+     *
+     * @param node index of the node to free
+     */
+    private void freeNode(int node) {
+        left[node] = freeNodes;
+        freeNodes = node;
+    }
+
+    /**
+     * Keys of one triage level, sorted between head and tail, which is also their order of arrival.
+     * Removed keys stay in place, marked as removed, until they reach the head.
+     */
+    private static class Arrivals {
+        private long[] keys; // priority keys, sorted between head and tail
+        private boolean[] removed; // removed[i] is true if keys[i] has left the census
+        private int head; // index of the oldest key which has not been dropped
+        private int tail; // index following the youngest key
+        private int removedCount; // number of keys marked as removed between head and tail
+
+        /**
+         * Creates new empty arrivals, whose arrays are allocated on the first key
+         */
+        private Arrivals() {
+            this.keys = NO_KEYS;
+            this.removed = NO_FLAGS;
+        }
+
+        /**
+         * Creates new arrivals holding the same keys as the given ones
+         *
+         * @param other arrivals to copy
+         */
+        private Arrivals(Arrivals other) {
+            this.keys = Arrays.copyOf(other.keys, other.keys.length);
+            this.removed = Arrays.copyOf(other.removed, other.removed.length);
+            this.head = other.head;
+            this.tail = other.tail;
+            this.removedCount = other.removedCount;
+        }
+
+        /**
+         * Adds a key at its place in key order, after the equal keys. When the arrays are full, the
+         * removed keys are dropped, and the arrays are doubled unless that frees more than half of
+         * them.
+         *
+         * @param key priority key to add
+         */
+        private void add(long key) {
+            if (tail == keys.length) {
+                int count = tail - head - removedCount;
+                int length = count * 2 >= keys.length ? Math.max(INITIAL_LENGTH, keys.length * 2)
+                        : keys.length;
+                long[] newKeys = length == keys.length ? keys : new long[length];
+                boolean[] newRemoved = length == keys.length ? removed : new boolean[length];
+                int kept = 0;
+                for (int i = head; i < tail; i++) {
+                    if (!removed[i]) {
+                        newKeys[kept] = keys[i];
+                        newRemoved[kept++] = false;
+                    }
+                }
+                keys = newKeys;
+                removed = newRemoved;
+                head = 0;
+                tail = kept;
+                removedCount = 0;
+            }
+            int index = tail;
+            if (index > head && keys[index - 1] > key) {
+                index = search(key + 1);
+                System.arraycopy(keys, index, keys, index + 1, tail - index);
+                System.arraycopy(removed, index, removed, index + 1, tail - index);
+            }
+            keys[index] = key;
+            removed[index] = false;
+            tail++;
+        }
+
+        /**
+         * Marks one occurrence of the given key as removed, then drops the removed keys at the head
+         *
+         * @param key priority key to remove, which must be in these arrivals
+         */
+        private void remove(long key) {
+            int index = head;
+            if (keys[index] != key || removed[index]) {
+                index = search(key);
+                while (removed[index]) {
+                    index++;
+                }
+            }
+            removed[index] = true;
+            removedCount++;
+            while (head < tail && removed[head]) {
+                head++;
+                removedCount--;
+            }
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        /**
+         * Finds the first index whose key is not smaller than the given key
+         *
+         * @param key priority key to look for
+         * @return the index of the first key greater than or equal to key, or tail if none
+         */
+        private int search(long key) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Removes all the keys, releasing arrays grown past their initial length
+         */
+        private void clear() {
+            if (keys.length > INITIAL_LENGTH) {
+                keys = NO_KEYS;
+                removed = NO_FLAGS;
+            }
+            head = 0;
+            tail = 0;
+            removedCount = 0;
+        }
+    }
+}
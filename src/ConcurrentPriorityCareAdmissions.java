@@ -0,0 +1,607 @@
+package src;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe priority queue storing PatientRecords, in which several intake threads can call
+ * addPatient() while several clinician threads call removeBestRecord(). PatientRecords are
+ * dequeued in the order defined by src.PatientRecord.compareTo().
+ *
+ * The queue is striped by triage level: the PatientRecords of each src.TriageLevel are kept in their
+ * own src.PriorityCareAdmissions heap, guarded by its own lock. Since the stripes partition the
+ * PatientRecords by triage level, the best src.PatientRecord of the queue is the root of the first
+ * non-empty stripe (RED first, then YELLOW, then GREEN), and threads working on different triage
+ * levels never contend for the same lock. The number of PatientRecords of each stripe is also
+ * published in an atomic array, so that empty stripes are skipped without being locked.
+ *
+ * The capacity of the queue is shared by all the stripes: an addPatient() call first reserves a
+ * place in the queue, atomically, and only then inserts its src.PatientRecord into its stripe.
+ *
+ * Clinician threads can also wait for PatientRecords with take() and poll(timeout, unit), and intake
+ * threads can wait for room in a full queue with offer(p, timeout, unit), like with a
+ * java.util.concurrent.BlockingQueue. Waiting threads park on the conditions of a separate wait
+ * lock, which is only acquired when some thread is actually waiting: each new src.PatientRecord
+ * wakes up a single waiting clinician, and each dequeued src.PatientRecord a single waiting intake
+ * thread.
+ */
+public class ConcurrentPriorityCareAdmissions {
+    private static final int INITIAL_STRIPE_CAPACITY = 16; // initial capacity of each stripe
+
+    private final PriorityCareAdmissions[] stripes; // one heap per triage level, indexed by ordinal
+    private final ReentrantLock[] locks; // locks[i] guards stripes[i]
+    private final AtomicIntegerArray stripeSizes; // number of PatientRecords in each stripe
+    private final AtomicInteger reserved; // places of this queue taken by admitted PatientRecords
+    private final int capacity; // capacity of this priority queue
+    private final ReentrantLock waitLock; // lock of the conditions waiting threads park on
+    private final Condition notEmpty; // signalled when a src.PatientRecord is added
+    private final Condition notFull; // signalled when a place of the queue is released
+    private final AtomicInteger waitingTakers; // number of threads waiting for a src.PatientRecord
+    private final AtomicInteger waitingOffers; // number of threads waiting for a free place
+
+    /**
+     * Creates a new empty src.ConcurrentPriorityCareAdmissions queue with the given capacity
+     *
+     * @param capacity Capacity of this src.ConcurrentPriorityCareAdmissions queue
+     * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+     *                                  positive integer
+     */
+    public ConcurrentPriorityCareAdmissions(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        int levels = TriageLevel.values().length;
+        this.capacity = capacity;
+        this.stripes = new PriorityCareAdmissions[levels];
+        this.locks = new ReentrantLock[levels];
+        this.stripeSizes = new AtomicIntegerArray(levels);
+        this.reserved = new AtomicInteger();
+        this.waitLock = new ReentrantLock();
+        this.notEmpty = waitLock.newCondition();
+        this.notFull = waitLock.newCondition();
+        this.waitingTakers = new AtomicInteger();
+        this.waitingOffers = new AtomicInteger();
+        for (int level = 0; level < levels; level++) {
+            stripes[level] = new PriorityCareAdmissions(Math.min(capacity, INITIAL_STRIPE_CAPACITY),
+                    2, 2.0, capacity);
+            locks[level] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Checks whether this src.ConcurrentPriorityCareAdmissions queue is empty
+     *
+     * @return {@code true} if this queue is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the size of this src.ConcurrentPriorityCareAdmissions queue. While other threads modify
+     * the queue, the returned value is only an estimate.
+     *
+     * @return the total number of PatientRecords stored in this queue
+     */
+    public int size() {
+        int size = 0;
+        for (int level = 0; level < stripes.length; level++) {
+            size += stripeSizes.get(level);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the capacity of this src.ConcurrentPriorityCareAdmissions queue
+     *
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of PatientRecords of the given triage level waiting in this queue, without
+     * locking. While other threads modify the queue, the returned value is only an estimate.
+     *
+     * @param level triage level to count
+     * @return the number of waiting PatientRecords of this triage level
+     */
+    public int countByTriage(TriageLevel level) {
+        return stripeSizes.get(level.ordinal());
+    }
+
+    /**
+     * Cancels the waiting src.PatientRecord having the given CASE_NUMBER, for instance a patient who
+     * walked out, with src.PriorityCareAdmissions.cancel(). The stripes are locked one at a time
+     * until the src.PatientRecord is found.
+     *
+     * @param caseNumber CASE_NUMBER of the src.PatientRecord to cancel
+     * @return the cancelled src.PatientRecord
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public PatientRecord cancel(long caseNumber) {
+        for (int level = 0; level < stripes.length; level++) {
+            PatientRecord cancelled = null;
+            locks[level].lock();
+            try {
+                if (stripes[level].contains(caseNumber)) {
+                    cancelled = stripes[level].cancel(caseNumber);
+                    stripeSizes.decrementAndGet(level);
+                }
+            } finally {
+                locks[level].unlock();
+            }
+            if (cancelled != null) {
+                release(1);
+                return cancelled;
+            }
+        }
+        throw new NoSuchElementException("No waiting patient with case number " + caseNumber);
+    }
+
+    /**
+     * Returns the position in line of the waiting src.PatientRecord having the given CASE_NUMBER:
+     * the number of PatientRecords of higher triage levels, plus its rank within the stripe of its
+     * own level. The stripes are locked one at a time until the src.PatientRecord is found, so while
+     * other threads modify the queue, the returned value is only an estimate.
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the number of PatientRecords ahead of the src.PatientRecord having this CASE_NUMBER
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public int rankOf(long caseNumber) {
+        int ahead = 0;
+        for (int level = 0; level < stripes.length; level++) {
+            locks[level].lock();
+            try {
+                if (stripes[level].contains(caseNumber)) {
+                    return ahead + stripes[level].rankOf(caseNumber);
+                }
+                ahead += stripes[level].size();
+            } finally {
+                locks[level].unlock();
+            }
+        }
+        throw new NoSuchElementException("No waiting patient with case number " + caseNumber);
+    }
+
+    /**
+     * Returns a snapshot of the census of this queue. Each stripe is locked in turn, so the census of
+     * each triage level is exact, but the levels may be observed at slightly different times.
+     *
+     * @return a src.TriageCensus snapshot of this queue
+     */
+    public TriageCensus snapshotStats() {
+        int[] counts = new int[stripes.length];
+        long[] oldestKeys = new long[stripes.length];
+        for (int level = 0; level < stripes.length; level++) {
+            locks[level].lock();
+            try {
+                counts[level] = stripes[level].size();
+                oldestKeys[level] = counts[level] == 0 ? -1
+                        : PriorityCareAdmissions.priorityKey(stripes[level].peek());
+            } finally {
+                locks[level].unlock();
+            }
+        }
+        return new TriageCensus(counts, oldestKeys);
+    }
+
+    /**
+     * Adds the given src.PatientRecord to this src.ConcurrentPriorityCareAdmissions queue. Only the
+     * stripe of its triage level is locked.
+     *
+     * @param p src.PatientRecord to add to this queue
+     * @throws NullPointerException  if the given src.PatientRecord is null
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if this queue is full
+     */
+    public void addPatient(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        if (!tryReserve()) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+        insert(p);
+    }
+
+    /**
+     * Adds the given src.PatientRecord to this queue, waiting up to the given time for a place to
+     * become available if this queue is full.
+     *
+     * @param p       src.PatientRecord to add to this queue
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    unit of the timeout
+     * @return {@code true} if the src.PatientRecord was added, {@code false} if the timeout elapsed
+     *         before a place became available
+     * @throws NullPointerException if the given src.PatientRecord is null
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean offer(PatientRecord p, long timeout, TimeUnit unit) throws InterruptedException {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        if (!tryReserve()) {
+            long nanos = unit.toNanos(timeout);
+            waitLock.lockInterruptibly();
+            waitingOffers.incrementAndGet();
+            try {
+                while (!tryReserve()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            } finally {
+                waitingOffers.decrementAndGet();
+                waitLock.unlock();
+            }
+        }
+        insert(p);
+        return true;
+    }
+
+    /**
+     * Returns the src.PatientRecord having the highest priority in this queue, without removing it.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord peek() {
+        for (int level = 0; level < stripes.length; level++) {
+            if (stripeSizes.get(level) > 0) {
+                locks[level].lock();
+                try {
+                    if (!stripes[level].isEmpty()) {
+                        return stripes[level].peek();
+                    }
+                } finally {
+                    locks[level].unlock();
+                }
+            }
+        }
+        throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this queue. Only the
+     * stripe of the returned src.PatientRecord is locked while it is removed.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord removeBestRecord() {
+        PatientRecord p = pollBest();
+        if (p == null) {
+            throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+        }
+        return p;
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this queue, or returns
+     * null if this queue is empty. Unlike removeBestRecord(), no exception is thrown on an empty
+     * queue.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue, or null if this queue
+     *         is empty
+     */
+    public PatientRecord poll() {
+        return pollBest();
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this queue, waiting
+     * until a src.PatientRecord is added if this queue is empty.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public PatientRecord take() throws InterruptedException {
+        PatientRecord p = pollBest();
+        if (p != null) {
+            return p;
+        }
+        waitLock.lockInterruptibly();
+        waitingTakers.incrementAndGet();
+        try {
+            while ((p = pollBest()) == null) {
+                notEmpty.await();
+            }
+            return p;
+        } finally {
+            waitingTakers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this queue, waiting up
+     * to the given time for a src.PatientRecord to be added if this queue is empty.
+     *
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    unit of the timeout
+     * @return the src.PatientRecord having the highest priority in this queue, or null if the timeout
+     *         elapsed before a src.PatientRecord was added
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public PatientRecord poll(long timeout, TimeUnit unit) throws InterruptedException {
+        PatientRecord p = pollBest();
+        if (p != null) {
+            return p;
+        }
+        long nanos = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        waitingTakers.incrementAndGet();
+        try {
+            while ((p = pollBest()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return p;
+        } finally {
+            waitingTakers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Removes at most the given number of PatientRecords from this queue, in priority order, and adds
+     * them to the given collection. Each stripe is locked once, and drained with
+     * src.PriorityCareAdmissions.drainTo(), instead of being locked once per src.PatientRecord.
+     *
+     * @param c           collection to add the drained PatientRecords to
+     * @param maxElements maximum number of PatientRecords to drain
+     * @return the number of PatientRecords drained
+     * @throws NullPointerException if c is null
+     */
+    public int drainTo(Collection<? super PatientRecord> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        int drained = 0;
+        for (int level = 0; level < stripes.length && drained < maxElements; level++) {
+            if (stripeSizes.get(level) > 0) {
+                locks[level].lock();
+                try {
+                    int count = stripes[level].drainTo(c, maxElements - drained);
+                    stripeSizes.addAndGet(level, -count);
+                    drained += count;
+                } finally {
+                    locks[level].unlock();
+                }
+            }
+        }
+        release(drained);
+        return drained;
+    }
+
+    /**
+     * Removes all the PatientRecords of the given triage level from this queue, and returns them in
+     * priority order. Only the stripe of this triage level is locked, once.
+     *
+     * @param level triage level of the PatientRecords to remove
+     * @return the removed PatientRecords, in priority order
+     * @throws NullPointerException if level is null
+     */
+    public List<PatientRecord> drainLevel(TriageLevel level) {
+        int ordinal = level.ordinal();
+        List<PatientRecord> drained;
+        locks[ordinal].lock();
+        try {
+            drained = stripes[ordinal].drainLevel(level);
+            stripeSizes.addAndGet(ordinal, -drained.size());
+        } finally {
+            locks[ordinal].unlock();
+        }
+        release(drained.size());
+        return drained;
+    }
+
+    /**
+     * Removes all the elements from this src.ConcurrentPriorityCareAdmissions queue. All the stripes
+     * are locked, in the order of the triage levels, while they are cleared.
+     */
+    public void clear() {
+        int removed = 0;
+        lockAll();
+        try {
+            for (int level = 0; level < stripes.length; level++) {
+                int count = stripes[level].size();
+                stripes[level].clear();
+                stripeSizes.addAndGet(level, -count);
+                removed += count;
+            }
+        } finally {
+            unlockAll();
+        }
+        release(removed);
+    }
+
+    /**
+     * Releases the places of the given number of removed PatientRecords, and wakes up all the intake
+     * threads waiting for a free place, if any
+     *
+     * @param count number of places to release
+     */
+    private void release(int count) {
+        if (count == 0) {
+            return;
+        }
+        reserved.addAndGet(-count);
+        if (waitingOffers.get() > 0) {
+            waitLock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a String representing this src.ConcurrentPriorityCareAdmissions queue, where each
+     * element (src.PatientRecord) of the queue is listed on a separate line, in order from smallest to
+     * greatest. All the stripes are locked while the String is built, so that it represents a single
+     * state of the queue.
+     *
+     * @return a String representing this queue, and an empty String "" if this queue is empty.
+     */
+    @Override
+    public String toString() {
+        StringBuilder patientList = new StringBuilder();
+        lockAll();
+        try {
+            for (PriorityCareAdmissions stripe : stripes) {
+                patientList.append(stripe.toString());
+            }
+        } finally {
+            unlockAll();
+        }
+        return patientList.toString();
+    }
+
+    /**
+     * Reserves a place for a new src.PatientRecord in this queue
+     *
+     * @return {@code true} if a place was reserved, {@code false} if this queue is full
+     */
+    private boolean tryReserve() {
+        int taken;
+        do {
+            taken = reserved.get();
+            if (taken == capacity) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(taken, taken + 1));
+        return true;
+    }
+
+    /**
+     * Inserts a src.PatientRecord, whose place has already been reserved, into its stripe
+     *
+     * @param p src.PatientRecord to insert
+     */
+    private void insert(PatientRecord p) {
+        int level = p.getTriage().ordinal();
+        locks[level].lock();
+        try {
+            stripes[level].addPatient(p);
+            stripeSizes.incrementAndGet(level);
+        } finally {
+            locks[level].unlock();
+        }
+        // the waiting clinician registered itself before checking the stripes, so either it sees p,
+        // or it is counted here
+        if (waitingTakers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the root of the first non-empty stripe
+     *
+     * @return the src.PatientRecord having the highest priority, or null if this queue is empty
+     */
+    private PatientRecord pollBest() {
+        for (int level = 0; level < stripes.length; level++) {
+            if (stripeSizes.get(level) > 0) {
+                PatientRecord p = null;
+                locks[level].lock();
+                try {
+                    if (!stripes[level].isEmpty()) {
+                        p = stripes[level].removeBestRecord();
+                        stripeSizes.decrementAndGet(level);
+                    }
+                } finally {
+                    locks[level].unlock();
+                }
+                if (p != null) {
+                    reserved.decrementAndGet();
+                    if (waitingOffers.get() > 0) {
+                        signalNotFull();
+                    }
+                    return p;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wakes up a single intake thread waiting for a free place. When called by a thread already
+     * holding the wait lock (a clinician in take()), the lock is simply re-entered.
+     */
+    private void signalNotFull() {
+        waitLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Copies the PatientRecords of this queue and their priority keys into new arrays. All the stripes
+     * are locked, but only for the time of the array copies, so the copy is consistent across the
+     * triage levels.
+     *
+     * @param seen list of the PatientRecords already seen, copied into the snapshot as well
+     * @return a src.AdmissionsSnapshot holding the copies
+     */
+    AdmissionsSnapshot capture(List<PatientRecord> seen) {
+        lockAll();
+        try {
+            int count = 0;
+            for (PriorityCareAdmissions stripe : stripes) {
+                count += stripe.size();
+            }
+            PatientRecord[] records = new PatientRecord[count];
+            long[] keys = new long[count];
+            int copied = 0;
+            for (PriorityCareAdmissions stripe : stripes) {
+                copied += stripe.copyRecords(records, keys, copied);
+            }
+            return new AdmissionsSnapshot(records, keys, seen);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Locks all the stripes, in the order of the triage levels
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Unlocks all the stripes, in the reverse order of the triage levels
+     */
+    private void unlockAll() {
+        for (int level = locks.length - 1; level >= 0; level--) {
+            locks[level].unlock();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package src;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable array of fixed-length entries stored off the Java heap, used by
+ * src.OffHeapPriorityCareAdmissions. The entries are stored in direct ByteBuffers of CHUNK_ENTRIES
+ * entries each, allocated as the array grows, so that no single buffer has to hold the whole array
+ * and growing never copies the existing entries. New entries are filled with zeros.
+ *
+ * The fields of an entry are read and written at a byte offset within the entry. Entries are
+ * indexed by long, so an array can hold more than 2^31 entries.
+ */
+class DirectArray {
+    private static final int CHUNK_SHIFT = 16; // log2 of the number of entries per chunk
+    private static final int CHUNK_ENTRIES = 1 << CHUNK_SHIFT; // number of entries per chunk
+    private static final long CHUNK_MASK = CHUNK_ENTRIES - 1; // index of an entry in its chunk
+    private static final ByteBuffer[] NO_CHUNKS = new ByteBuffer[0]; // chunks of an empty array
+
+    private final int entryLength; // length in bytes of each entry
+    private ByteBuffer[] chunks; // direct buffers holding the entries
+
+    /**
+     * Creates a new empty src.DirectArray. No off-heap memory is allocated until it grows.
+     *
+     * @param entryLength length in bytes of each entry
+     */
+    DirectArray(int entryLength) {
+        this.entryLength = entryLength;
+        this.chunks = NO_CHUNKS;
+    }
+
+    /**
+     * Returns the number of entries this array can hold without growing
+     *
+     * @return the number of allocated entries
+     */
+    long length() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated by this array
+     *
+     * @return the total length of the chunks of this array
+     */
+    long bytes() {
+        return length() * entryLength;
+    }
+
+    /**
+     * Allocates chunks until this array holds at least the given number of entries
+     *
+     * @param length number of entries this array should hold
+     */
+    void ensureLength(long length) {
+        while (length() < length) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_ENTRIES * entryLength)
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Returns the chunk holding the given entry, positioned at the start of that entry, to read or
+     * write it with relative operations
+     *
+     * @param index index of an entry
+     * @return the chunk of the entry, positioned at the entry
+     */
+    ByteBuffer at(long index) {
+        ByteBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        chunk.position(offset(index));
+        return chunk;
+    }
+
+    /**
+     * Reads a long field of the given entry
+     *
+     * @param index index of an entry
+     * @param field byte offset of the field within the entry
+     * @return the value of the field
+     */
+    long getLong(long index, int field) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getLong(offset(index) + field);
+    }
+
+    /**
+     * Writes a long field of the given entry
+     *
+     * @param index index of an entry
+     * @param field byte offset of the field within the entry
+     * @param value new value of the field
+     */
+    void putLong(long index, int field, long value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].putLong(offset(index) + field, value);
+    }
+
+    /**
+     * Reads an int field of the given entry
+     *
+     * @param index index of an entry
+     * @param field byte offset of the field within the entry
+     * @return the value of the field
+     */
+    int getInt(long index, int field) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getInt(offset(index) + field);
+    }
+
+    /**
+     * Writes an int field of the given entry
+     *
+     * @param index index of an entry
+     * @param field byte offset of the field within the entry
+     * @param value new value of the field
+     */
+    void putInt(long index, int field, int value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].putInt(offset(index) + field, value);
+    }
+
+    /**
+     * Writes a byte field of the given entry
+     *
+     * @param index index of an entry
+     * @param field byte offset of the field within the entry
+     * @param value new value of the field
+     */
+    void put(long index, int field, byte value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put(offset(index) + field, value);
+    }
+
+    /**
+     * Returns the byte offset of the given entry within its chunk
+     *
+     * @param index index of an entry
+     * @return the offset of the entry in its chunk
+     */
+    private int offset(long index) {
+        return (int) (index & CHUNK_MASK) * entryLength;
+    }
+}
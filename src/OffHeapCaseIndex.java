@@ -0,0 +1,164 @@
+package src;
+
+/**
+ * Open-addressing hash map from CASE_NUMBER to a non-negative int, stored off the Java heap, used
+ * by src.OffHeapPriorityCareAdmissions to locate the record slot of each waiting patient. It works
+ * like src.CaseIndex, but its table is a src.DirectArray of 12-byte entries: the CASE_NUMBER, then
+ * 1 + the value mapped to it, or 0 if the entry is free.
+ *
+ * Collisions are resolved by linear probing, and removals shift the following entries of the probe
+ * sequence back, so the table never holds deleted markers. The table doubles whenever it becomes
+ * half full.
+ */
+class OffHeapCaseIndex {
+    private static final int ENTRY_LENGTH = 12; // length of an entry of the table
+    private static final int CASE_NUMBER = 0; // offset of the CASE_NUMBER in an entry
+    private static final int VALUE = 8; // offset of 1 + the value in an entry, 0 if free
+    private static final long INITIAL_LENGTH = 1 << 16; // initial length of the table, one chunk
+
+    private DirectArray table; // entries of the table
+    private long mask; // length of the table minus one, the table length being a power of two
+    private long size; // number of keys in the table
+
+    /**
+     * Creates a new empty src.OffHeapCaseIndex. Its table is only allocated when the first
+     * CASE_NUMBER is added.
+     */
+    OffHeapCaseIndex() {
+        this.table = new DirectArray(ENTRY_LENGTH);
+        this.mask = -1;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated by this index
+     *
+     * @return the length in bytes of the table
+     */
+    long bytes() {
+        return table.bytes();
+    }
+
+    /**
+     * Returns the value mapped to the given CASE_NUMBER
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the value mapped to caseNumber, or -1 if it is not in this index
+     */
+    int get(long caseNumber) {
+        if (size == 0) {
+            return -1;
+        }
+        int value;
+        for (long i = CaseIndex.hash(caseNumber) & mask; (value = table.getInt(i, VALUE)) != 0;
+                i = (i + 1) & mask) {
+            if (table.getLong(i, CASE_NUMBER) == caseNumber) {
+                return value - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the given CASE_NUMBER to the given value, replacing its previous value if any
+     *
+     * @param caseNumber CASE_NUMBER to map
+     * @param value      value to map it to, a non-negative integer
+     */
+    void put(long caseNumber, int value) {
+        if (mask < 0) {
+            table.ensureLength(INITIAL_LENGTH);
+            mask = INITIAL_LENGTH - 1;
+        }
+        long i = CaseIndex.hash(caseNumber) & mask;
+        while (table.getInt(i, VALUE) != 0) {
+            if (table.getLong(i, CASE_NUMBER) == caseNumber) {
+                table.putInt(i, VALUE, value + 1);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        table.putLong(i, CASE_NUMBER, caseNumber);
+        table.putInt(i, VALUE, value + 1);
+        size++;
+        if (2 * size > mask + 1) {
+            rehash(2 * (mask + 1));
+        }
+    }
+
+    /**
+     * Removes the given CASE_NUMBER from this index, if it is mapped to the given value. The
+     * entries following it in its probe sequence are shifted back to fill the gap.
+     *
+     * @param caseNumber CASE_NUMBER to remove
+     * @param value      value caseNumber is expected to be mapped to
+     * @return {@code true} if caseNumber was mapped to value and has been removed
+     */
+    boolean remove(long caseNumber, int value) {
+        if (size == 0) {
+            return false;
+        }
+        long i = CaseIndex.hash(caseNumber) & mask;
+        while (table.getInt(i, VALUE) != 0 && table.getLong(i, CASE_NUMBER) != caseNumber) {
+            i = (i + 1) & mask;
+        }
+        if (table.getInt(i, VALUE) != value + 1) {
+            return false;
+        }
+
+        // shift back the following entries which cannot be found anymore past the gap at i
+        long gap = i;
+        int moved;
+        for (long j = (gap + 1) & mask; (moved = table.getInt(j, VALUE)) != 0;
+                j = (j + 1) & mask) {
+            long key = table.getLong(j, CASE_NUMBER);
+            long home = CaseIndex.hash(key) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table.putLong(gap, CASE_NUMBER, key);
+                table.putInt(gap, VALUE, moved);
+                gap = j;
+            }
+        }
+        table.putInt(gap, VALUE, 0);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all the CASE_NUMBERs from this index, in time linear in the length of its table. The
+     * table is kept at its current length and its entries are marked as free, so that refilling the
+     * index allocates no off-heap memory and does not rehash again.
+     */
+    void clear() {
+        if (size > 0) {
+            for (long i = 0; i <= mask; i++) {
+                table.putInt(i, VALUE, 0);
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * Moves all the entries of this index to a new table of the given length
+     *
+     * @param length length of the new table, a power of two
+     */
+    private void rehash(long length) {
+        DirectArray old = table;
+        long oldLength = mask + 1;
+        table = new DirectArray(ENTRY_LENGTH);
+        table.ensureLength(length);
+        mask = length - 1;
+        for (long j = 0; j < oldLength; j++) {
+            int value = old.getInt(j, VALUE);
+            if (value != 0) {
+                long key = old.getLong(j, CASE_NUMBER);
+                long i = CaseIndex.hash(key) & mask;
+                while (table.getInt(i, VALUE) != 0) {
+                    i = (i + 1) & mask;
+                }
+                table.putLong(i, CASE_NUMBER, key);
+                table.putInt(i, VALUE, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package src;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Array-based binary min-heap of patients whose fields are stored off the Java heap, for queues
+ * holding millions of patients. It orders patients exactly like src.PriorityCareAdmissions, but
+ * keeps no src.PatientRecord object alive.
+ *
+ * All the per-patient state lives in three src.DirectArray arrays of direct buffers, allocated in
+ * chunks as the queue fills up:
+ * - the record slots: the fields of each waiting patient (CASE_NUMBER, gender, age, triage level,
+ * order of arrival and seen flag) are packed with src.PatientRecordCodec, followed by the index of
+ * the patient in the array-heap. The slots of removed patients are chained through that index and
+ * reused.
+ * - the array-heap: the priority key and the record slot of each patient, in heap order. Sifts only
+ * move these 12-byte entries, and update the heap index stored in the record slots.
+ * - a src.OffHeapCaseIndex mapping each CASE_NUMBER to its record slot, which never changes while
+ * the patient waits, so the map is only updated when patients are added and removed.
+ *
+ * The garbage collector therefore only sees a few objects and one reference per chunk, whatever the
+ * number of waiting patients. A src.PatientRecord is only created when a caller asks for one, by
+ * peek(), removeBestRecord() or get(). Patients can also be admitted with admit(), without ever
+ * creating a src.PatientRecord.
+ */
+public class OffHeapPriorityCareAdmissions {
+    private static final int HEAP_INDEX = PatientRecordCodec.RECORD_LENGTH; // offset in a slot
+    private static final int SLOT_LENGTH = HEAP_INDEX + 4; // length of a record slot
+    private static final int KEY = 0; // offset of the priority key in a heap entry
+    private static final int SLOT = 8; // offset of the record slot in a heap entry
+    private static final int ENTRY_LENGTH = 12; // length of a heap entry
+    private static final int NO_SLOT = -1; // end of the chain of free record slots
+
+    private final int capacity; // capacity of this queue
+    private final DirectArray records; // record slots, followed by their heap index
+    private final DirectArray heap; // priority key and record slot of each heap entry
+    private final OffHeapCaseIndex slots; // record slot of each waiting CASE_NUMBER
+    private int freeSlot; // first record slot of the chain of released slots, or NO_SLOT
+    private int slotCount; // number of record slots handed out at least once
+    private int size; // number of patients waiting in this queue
+
+    /**
+     * Creates a new empty src.OffHeapPriorityCareAdmissions queue with the given capacity. No
+     * off-heap memory is allocated until patients are added.
+     *
+     * @param capacity capacity of this queue
+     * @throws IllegalArgumentException with a descriptive error message if capacity is not between
+     *                                  1 and src.PriorityCareAdmissions.MAX_CAPACITY
+     */
+    public OffHeapPriorityCareAdmissions(int capacity) {
+        if (capacity <= 0 || capacity > PriorityCareAdmissions.MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        this.capacity = capacity;
+        this.records = new DirectArray(SLOT_LENGTH);
+        this.heap = new DirectArray(ENTRY_LENGTH);
+        this.slots = new OffHeapCaseIndex();
+        this.freeSlot = NO_SLOT;
+    }
+
+    /**
+     * Checks whether this queue is empty
+     *
+     * @return {@code true} if no patient is waiting in this queue
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of patients waiting in this queue
+     *
+     * @return the size of this queue
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the capacity of this queue
+     *
+     * @return the maximum number of patients this queue can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated by this queue
+     *
+     * @return the total length of the direct buffers of this queue
+     */
+    public long offHeapBytes() {
+        return records.bytes() + heap.bytes() + slots.bytes();
+    }
+
+    /**
+     * Adds the patient of the given src.PatientRecord to this queue. Its fields are copied off-heap,
+     * so the caller does not need to keep the src.PatientRecord.
+     *
+     * @param p src.PatientRecord to add to this queue
+     * @throws NullPointerException  if p is null
+     * @throws IllegalStateException with the exact error message "Warning: Full Admissions Queue!" if
+     *                               this queue is full
+     */
+    public void addPatient(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        if (size == capacity) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+        int slot = allocateSlot();
+        PatientRecordCodec.encode(records.at(slot), p);
+        insert(p.CASE_NUMBER, slot, PriorityCareAdmissions.priorityKey(p));
+    }
+
+    /**
+     * Admits a new patient directly into this queue, without creating a src.PatientRecord. The
+     * patient gets the next order of arrival and CASE_NUMBER of the patient counter, as if a
+     * src.PatientRecord had been created.
+     *
+     * @param gender single-character gender marker of the patient
+     * @param age    age of the patient in years
+     * @param triage triage level of the patient
+     * @return the CASE_NUMBER of the admitted patient
+     * @throws NullPointerException  if triage is null
+     * @throws IllegalStateException with the exact error message "Warning: Full Admissions Queue!" if
+     *                               this queue is full
+     */
+    public long admit(char gender, int age, TriageLevel triage) {
+        if (triage == null) {
+            throw new NullPointerException();
+        }
+        if (size == capacity) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+        int sequenceNumber = PatientRecord.nextSequenceNumber();
+        long caseNumber = PatientRecord.encodeCaseNumber(gender, age, sequenceNumber);
+        int arrival = sequenceNumber - 1;
+        int slot = allocateSlot();
+        PatientRecordCodec.encode(records.at(slot), caseNumber, gender, age, triage.ordinal(),
+                arrival, false);
+        insert(caseNumber, slot, ((long) triage.ordinal() << 32)
+                | ((arrival ^ Integer.MIN_VALUE) & 0xFFFFFFFFL));
+        return caseNumber;
+    }
+
+    /**
+     * Returns a new src.PatientRecord holding the patient having the highest priority in this queue
+     *
+     * @return the patient at the root of this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord peek() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+        }
+        return PatientRecordCodec.decode(records.at(heap.getInt(0, SLOT)));
+    }
+
+    /**
+     * Removes the patient having the highest priority from this queue, and returns it as a new
+     * src.PatientRecord
+     *
+     * @return the removed patient
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord removeBestRecord() {
+        PatientRecord best = peek();
+        removeAt(0, best.CASE_NUMBER);
+        return best;
+    }
+
+    /**
+     * Checks whether a patient having the given CASE_NUMBER is waiting in this queue, in O(1) time
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return {@code true} if a patient having this CASE_NUMBER is waiting in this queue
+     */
+    public boolean contains(long caseNumber) {
+        return slots.get(caseNumber) >= 0;
+    }
+
+    /**
+     * Returns a new src.PatientRecord holding the waiting patient having the given CASE_NUMBER, in
+     * O(1) time
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the patient having this CASE_NUMBER, or null if there is no such patient waiting in
+     *         this queue
+     */
+    public PatientRecord get(long caseNumber) {
+        int slot = slots.get(caseNumber);
+        return slot < 0 ? null : PatientRecordCodec.decode(records.at(slot));
+    }
+
+    /**
+     * Changes the triage level of the waiting patient having the given CASE_NUMBER, and moves it to
+     * its new position in this queue in O(log n) time. Only its triage byte is rewritten off-heap.
+     *
+     * @param caseNumber CASE_NUMBER of the patient to re-triage
+     * @param newLevel   new triage level of this patient
+     * @throws NullPointerException   if newLevel is null
+     * @throws NoSuchElementException if no patient having this CASE_NUMBER is waiting in this queue
+     */
+    public void updateTriage(long caseNumber, TriageLevel newLevel) {
+        if (newLevel == null) {
+            throw new NullPointerException();
+        }
+        int slot = slotOf(caseNumber);
+        int index = records.getInt(slot, HEAP_INDEX);
+        records.put(slot, PatientRecordCodec.ORDINAL_OFFSET, (byte) newLevel.ordinal());
+        long oldKey = heap.getLong(index, KEY);
+        long newKey = ((long) newLevel.ordinal() << 32) | (oldKey & 0xFFFFFFFFL);
+        if (newKey < oldKey) {
+            siftUp(index, slot, newKey);
+        } else {
+            siftDown(index, slot, newKey);
+        }
+    }
+
+    /**
+     * Removes the waiting patient having the given CASE_NUMBER, and returns it as a new
+     * src.PatientRecord, in O(log n) time
+     *
+     * @param caseNumber CASE_NUMBER of the patient to remove
+     * @return the removed patient
+     * @throws NoSuchElementException if no patient having this CASE_NUMBER is waiting in this queue
+     */
+    public PatientRecord remove(long caseNumber) {
+        int slot = slotOf(caseNumber);
+        PatientRecord removed = PatientRecordCodec.decode(records.at(slot));
+        removeAt(records.getInt(slot, HEAP_INDEX), caseNumber);
+        return removed;
+    }
+
+    /**
+     * Removes all the patients from this queue. The chunks of the record slots, of the array-heap
+     * and of the case index are kept for reuse; the entries of the case index are marked as free in
+     * time linear in the length of its table.
+     */
+    public void clear() {
+        slots.clear();
+        size = 0;
+        slotCount = 0;
+        freeSlot = NO_SLOT;
+    }
+
+    /**
+     * Inserts a patient whose fields are already stored in the given record slot
+     *
+     * @param caseNumber CASE_NUMBER of the patient
+     * @param slot       record slot of the patient
+     * @param key        priority key of the patient
+     */
+    private void insert(long caseNumber, int slot, long key) {
+        slots.put(caseNumber, slot);
+        heap.ensureLength(size + 1L);
+        size++;
+        siftUp(size - 1, slot, key);
+    }
+
+    /**
+     * Removes the patient at the given index of the array-heap, and releases its record slot
+     *
+     * @param index      index of the patient in the array-heap
+     * @param caseNumber CASE_NUMBER of the patient
+     */
+    private void removeAt(int index, long caseNumber) {
+        int slot = heap.getInt(index, SLOT);
+        long removedKey = heap.getLong(index, KEY);
+        slots.remove(caseNumber, slot);
+        releaseSlot(slot);
+        size--;
+        if (index < size) {
+            int last = heap.getInt(size, SLOT);
+            long lastKey = heap.getLong(size, KEY);
+            if (lastKey < removedKey) {
+                siftUp(index, last, lastKey);
+            } else {
+                siftDown(index, last, lastKey);
+            }
+        }
+    }
+
+    /**
+     * Moves a patient up from the given empty index of the array-heap to its place
+     *
+     * @param hole index to start from, whose content is overwritten
+     * @param slot record slot of the patient to place
+     * @param key  priority key of the patient to place
+     */
+    private void siftUp(int hole, int slot, long key) {
+        while (hole > 0) {
+            int parent = (hole - 1) / 2;
+            long parentKey = heap.getLong(parent, KEY);
+            if (parentKey <= key) {
+                break;
+            }
+            place(hole, heap.getInt(parent, SLOT), parentKey);
+            hole = parent;
+        }
+        place(hole, slot, key);
+    }
+
+    /**
+     * Moves a patient down from the given empty index of the array-heap to its place
+     *
+     * @param hole index to start from, whose content is overwritten
+     * @param slot record slot of the patient to place
+     * @param key  priority key of the patient to place
+     */
+    private void siftDown(int hole, int slot, long key) {
+        int child;
+        while ((child = 2 * hole + 1) < size) {
+            long childKey = heap.getLong(child, KEY);
+            if (child + 1 < size) {
+                long rightKey = heap.getLong(child + 1, KEY);
+                if (rightKey < childKey) {
+                    child++;
+                    childKey = rightKey;
+                }
+            }
+            if (key <= childKey) {
+                break;
+            }
+            place(hole, heap.getInt(child, SLOT), childKey);
+            hole = child;
+        }
+        place(hole, slot, key);
+    }
+
+    /**
+     * Stores a patient at the given index of the array-heap, and records that index in its record
+     * slot
+     *
+     * @param index index of the array-heap
+     * @param slot  record slot of the patient
+     * @param key   priority key of the patient
+     */
+    private void place(int index, int slot, long key) {
+        heap.putLong(index, KEY, key);
+        heap.putInt(index, SLOT, slot);
+        records.putInt(slot, HEAP_INDEX, index);
+    }
+
+    /**
+     * Returns the record slot of the waiting patient having the given CASE_NUMBER
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the record slot of the patient having this CASE_NUMBER
+     * @throws NoSuchElementException if no patient having this CASE_NUMBER is waiting in this queue
+     */
+    private int slotOf(long caseNumber) {
+        int slot = slots.get(caseNumber);
+        if (slot < 0) {
+            throw new NoSuchElementException("No waiting patient with case number " + caseNumber);
+        }
+        return slot;
+    }
+
+    /**
+     * Hands out a free record slot, reusing a released one if any, and allocating a new chunk if
+     * all the chunks are in use
+     *
+     * @return the record slot
+     */
+    private int allocateSlot() {
+        if (freeSlot != NO_SLOT) {
+            int slot = freeSlot;
+            freeSlot = records.getInt(slot, HEAP_INDEX);
+            return slot;
+        }
+        int slot = slotCount++;
+        records.ensureLength(slotCount);
+        return slot;
+    }
+
+    /**
+     * Releases the given record slot, so that it is reused by the next added patient. The slot is
+     * chained to the other released slots through its heap index.
+     *
+     * @param slot record slot to release
+     */
+    private void releaseSlot(int slot) {
+        records.putInt(slot, HEAP_INDEX, freeSlot);
+        freeSlot = slot;
+    }
+}
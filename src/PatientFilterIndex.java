@@ -0,0 +1,377 @@
+package src;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Secondary index of the PatientRecords waiting in a src.PriorityCareAdmissions queue, used to
+ * answer src.PatientQuery queries without scanning the whole queue.
+ *
+ * The waiting PatientRecords are partitioned into cells, one cell per combination of age band,
+ * gender marker and triage level. The cells are stored in a dense array indexed by these three
+ * coordinates: ages from 0 to MAX_BANDED_AGE are split into bands, younger and older ages share the
+ * first and the last band, and the gender markers F, M and X each have their own cells while all
+ * the other markers share a fourth one. Each cell is a sorted array of priority keys and of the
+ * matching PatientRecords. A cell holds a single triage level, so its keys sort by order of arrival:
+ * new arrivals are appended, and dequeued PatientRecords are removed from the front, both in O(1)
+ * time. Re-triaged and cancelled PatientRecords are inserted or removed in the middle, shifting the
+ * rest of the cell.
+ *
+ * A query selects the cells matching its criteria, and merges them in priority order with a small
+ * heap of cursors, so the PatientRecords of the other cells are never touched. The cells shared by
+ * the other gender markers are only selected if the query accepts a marker other than F, M and X. A
+ * cell only partly covered by a query, because of its age band or because the query accepts only
+ * some of the other gender markers, is filtered record by record.
+ */
+class PatientFilterIndex {
+    private static final int MAX_BANDED_AGE = 120; // ages above it share the last age band
+    private static final String GENDERS = "FMX"; // gender markers having their own cells
+    private static final int GENDER_SLOTS = GENDERS.length() + 1; // plus one for all the others
+    private static final int LEVELS = TriageLevel.values().length; // number of triage levels
+    private static final int INITIAL_CELL_LENGTH = 8; // initial length of the arrays of a cell
+    private static final int INITIAL_CURSORS = 8; // initial length of the heap of cursors of a query
+
+    private final int ageBandWidth; // number of consecutive ages sharing a cell
+    private final int bands; // number of age bands
+    private final Cell[] cells; // cells by index, null until a src.PatientRecord is added to them
+
+    /**
+     * One cell of the index: the PatientRecords of one age band, gender marker and triage level,
+     * sorted by priority key between head and tail
+     */
+    private static class Cell {
+        private long[] keys; // priority keys, sorted between head and tail
+        private PatientRecord[] records; // records[i] has the priority key keys[i]
+        private int head; // index of the first src.PatientRecord of this cell
+        private int tail; // index following the last src.PatientRecord of this cell
+
+        /**
+         * Creates a new empty cell
+         */
+        private Cell() {
+            this.keys = new long[INITIAL_CELL_LENGTH];
+            this.records = new PatientRecord[INITIAL_CELL_LENGTH];
+        }
+
+        /**
+         * Creates a new cell holding the same PatientRecords as the given one
+         *
+         * @param other cell to copy
+         */
+        private Cell(Cell other) {
+            this.keys = Arrays.copyOf(other.keys, other.keys.length);
+            this.records = Arrays.copyOf(other.records, other.records.length);
+            this.head = other.head;
+            this.tail = other.tail;
+        }
+
+        /**
+         * Inserts a src.PatientRecord at its place in key order, after the equal keys
+         *
+         * @param p   src.PatientRecord to insert
+         * @param key priority key of p
+         */
+        private void add(PatientRecord p, long key) {
+            if (tail == keys.length) {
+                int count = tail - head;
+                if (count * 2 > keys.length) {
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                    records = Arrays.copyOf(records, records.length * 2);
+                }
+                System.arraycopy(keys, head, keys, 0, count);
+                System.arraycopy(records, head, records, 0, count);
+                Arrays.fill(records, count, tail, null);
+                head = 0;
+                tail = count;
+            }
+            int index = tail;
+            if (index > head && keys[index - 1] > key) {
+                index = search(key + 1);
+                System.arraycopy(keys, index, keys, index + 1, tail - index);
+                System.arraycopy(records, index, records, index + 1, tail - index);
+            }
+            keys[index] = key;
+            records[index] = p;
+            tail++;
+        }
+
+        /**
+         * Removes the given src.PatientRecord, which must be in this cell
+         *
+         * @param p   src.PatientRecord to remove
+         * @param key priority key of p
+         */
+        private void remove(PatientRecord p, long key) {
+            int index = records[head] == p ? head : search(key);
+            while (records[index] != p) {
+                index++;
+            }
+            if (index == head) {
+                records[head++] = null;
+            } else {
+                System.arraycopy(keys, index + 1, keys, index, tail - index - 1);
+                System.arraycopy(records, index + 1, records, index, tail - index - 1);
+                records[--tail] = null;
+            }
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        /**
+         * Finds the first index of this cell whose key is not smaller than the given key
+         *
+         * @param key priority key to look for
+         * @return the index of the first key greater than or equal to key, or tail if none
+         */
+        private int search(long key) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Removes all the PatientRecords of this cell
+         */
+        private void clear() {
+            Arrays.fill(records, head, tail, null);
+            head = 0;
+            tail = 0;
+        }
+    }
+
+    /**
+     * Creates a new empty src.PatientFilterIndex
+     *
+     * @param ageBandWidth number of consecutive ages sharing a cell, 1 for one cell per age
+     * @throws IllegalArgumentException with a descriptive error message if ageBandWidth is not a
+     *                                  positive integer
+     */
+    PatientFilterIndex(int ageBandWidth) {
+        if (ageBandWidth <= 0) {
+            throw new IllegalArgumentException("Invalid age band width");
+        }
+        this.ageBandWidth = ageBandWidth;
+        this.bands = MAX_BANDED_AGE / ageBandWidth + 1;
+        this.cells = new Cell[bands * GENDER_SLOTS * LEVELS];
+    }
+
+    /**
+     * Creates a new src.PatientFilterIndex holding the same PatientRecords as the given one
+     *
+     * @param other src.PatientFilterIndex to copy
+     */
+    PatientFilterIndex(PatientFilterIndex other) {
+        this(other.ageBandWidth);
+        for (int i = 0; i < cells.length; i++) {
+            if (other.cells[i] != null) {
+                cells[i] = new Cell(other.cells[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of consecutive ages sharing a cell of this index
+     *
+     * @return the width of the age bands of this index
+     */
+    int ageBandWidth() {
+        return ageBandWidth;
+    }
+
+    /**
+     * Adds the given src.PatientRecord to the cell matching its age, gender and triage level
+     *
+     * @param p src.PatientRecord to add
+     */
+    void add(PatientRecord p) {
+        int index = cellIndex(p);
+        if (cells[index] == null) {
+            cells[index] = new Cell();
+        }
+        cells[index].add(p, PriorityCareAdmissions.priorityKey(p));
+    }
+
+    /**
+     * Removes the given src.PatientRecord from the cell matching its age, gender and triage level.
+     * This must be called before the triage level of p changes.
+     *
+     * @param p src.PatientRecord to remove
+     */
+    void remove(PatientRecord p) {
+        cells[cellIndex(p)].remove(p, PriorityCareAdmissions.priorityKey(p));
+    }
+
+    /**
+     * Removes all the PatientRecords from this index
+     */
+    void clear() {
+        for (Cell cell : cells) {
+            if (cell != null) {
+                cell.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds the PatientRecords matching the given query to the given collection, in priority order
+     *
+     * @param query       criteria the PatientRecords must match
+     * @param maxElements maximum number of PatientRecords to add
+     * @param c           collection to add the matching PatientRecords to
+     */
+    void query(PatientQuery query, int maxElements, Collection<? super PatientRecord> c) {
+        // select the matching cells, and note those only partly covered by the query
+        int others = query.matchesOtherGenders(GENDERS);
+        Cursor[] heap = new Cursor[INITIAL_CURSORS];
+        int heapSize = 0;
+        for (int band = 0; band < bands; band++) {
+            long low = band == 0 ? Integer.MIN_VALUE : (long) band * ageBandWidth;
+            long high = band == bands - 1 ? Integer.MAX_VALUE
+                    : (long) band * ageBandWidth + ageBandWidth - 1;
+            int ages = query.matchesAges((int) low, (int) high);
+            if (ages == 0) {
+                continue;
+            }
+            for (int slot = 0; slot < GENDER_SLOTS; slot++) {
+                boolean shared = slot == GENDERS.length();
+                if (shared ? others == 0 : !query.matchesGender(GENDERS.charAt(slot))) {
+                    continue;
+                }
+                for (TriageLevel level : TriageLevel.values()) {
+                    Cell cell = cells[(band * GENDER_SLOTS + slot) * LEVELS + level.ordinal()];
+                    if (cell == null || cell.head == cell.tail || !query.matchesTriage(level)) {
+                        continue;
+                    }
+                    Cursor cursor = new Cursor(cell, ages < 0 || (shared && others < 0) ? query
+                            : null);
+                    if (cursor.advance()) {
+                        if (heapSize == heap.length) {
+                            heap = Arrays.copyOf(heap, heapSize * 2);
+                        }
+                        heap[heapSize++] = cursor;
+                        siftUp(heap, heapSize - 1);
+                    }
+                }
+            }
+        }
+
+        // merge the cells in priority order with a min-heap of cursors ordered by priority key
+        for (int added = 0; added < maxElements && heapSize > 0; added++) {
+            Cursor best = heap[0];
+            c.add(best.cell.records[best.index]);
+            if (!best.advance()) {
+                heap[0] = heap[--heapSize];
+                heap[heapSize] = null;
+            }
+            siftDown(heap, heapSize);
+        }
+    }
+
+    /**
+     * Returns the index in the cell array of the cell matching the age, gender marker and triage
+     * level of the given src.PatientRecord
+     *
+     * @param p src.PatientRecord to locate
+     * @return the index of its cell
+     */
+    private int cellIndex(PatientRecord p) {
+        int band = Math.min(Math.max(Math.floorDiv(p.getAge(), ageBandWidth), 0), bands - 1);
+        int slot = GENDERS.indexOf(p.getGender());
+        if (slot < 0) {
+            slot = GENDERS.length();
+        }
+        return (band * GENDER_SLOTS + slot) * LEVELS + p.getTriage().ordinal();
+    }
+
+    /**
+     * Position of a query in one cell
+     */
+    private static class Cursor {
+        private final Cell cell; // cell read by this cursor
+        private final PatientQuery filter; // query to check each record against, or null
+        private int index; // index in the cell of the current src.PatientRecord
+        private long currentKey; // priority key of the current src.PatientRecord
+
+        /**
+         * Creates a cursor before the first src.PatientRecord of a cell
+         *
+         * @param cell   cell to read
+         * @param filter query to check each src.PatientRecord against, or null if they all match
+         */
+        private Cursor(Cell cell, PatientQuery filter) {
+            this.cell = cell;
+            this.filter = filter;
+            this.index = cell.head - 1;
+        }
+
+        /**
+         * Moves this cursor to the next matching src.PatientRecord of its cell
+         *
+         * @return {@code false} if the cell has no more matching src.PatientRecord
+         */
+        private boolean advance() {
+            while (++index < cell.tail) {
+                if (filter == null || filter.matches(cell.records[index])) {
+                    currentKey = cell.keys[index];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Moves the cursor at the given index of a min-heap of cursors up to its place
+     *
+     * @param heap  min-heap of cursors ordered by the key of their current src.PatientRecord
+     * @param index index of the cursor to move
+     */
+    private static void siftUp(Cursor[] heap, int index) {
+        Cursor cursor = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].currentKey <= cursor.currentKey) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = cursor;
+    }
+
+    /**
+     * Moves the cursor at the root of a min-heap of cursors down to its place
+     *
+     * @param heap min-heap of cursors ordered by the key of their current src.PatientRecord
+     * @param size number of cursors in the heap
+     */
+    private static void siftDown(Cursor[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        Cursor cursor = heap[0];
+        int index = 0;
+        int child;
+        while ((child = 2 * index + 1) < size) {
+            if (child + 1 < size && heap[child + 1].currentKey < heap[child].currentKey) {
+                child++;
+            }
+            if (cursor.currentKey <= heap[child].currentKey) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = cursor;
+    }
+}
@@ -0,0 +1,144 @@
+package src;
+
+import java.util.EnumSet;
+
+/**
+ * Filter over the waiting PatientRecords of a src.PriorityCareAdmissions queue, matching them on
+ * their age, gender marker and triage level. A new query matches every src.PatientRecord, and each
+ * method narrows it down and returns this query, so that criteria can be chained. For instance, the
+ * waiting patients over 80 in YELLOW are selected by:<BR/>
+ * <BR/>
+ * new PatientQuery().ages(81, Integer.MAX_VALUE).triage(TriageLevel.YELLOW)
+ */
+public class PatientQuery {
+    private int minAge; // smallest matching age, inclusive
+    private int maxAge; // greatest matching age, inclusive
+    private char[] genders; // matching gender markers, or null if any gender matches
+    private final EnumSet<TriageLevel> levels; // matching triage levels
+
+    /**
+     * Creates a new src.PatientQuery matching every src.PatientRecord
+     */
+    public PatientQuery() {
+        this.minAge = Integer.MIN_VALUE;
+        this.maxAge = Integer.MAX_VALUE;
+        this.genders = null;
+        this.levels = EnumSet.allOf(TriageLevel.class);
+    }
+
+    /**
+     * Restricts this query to the PatientRecords whose age is in the given range
+     *
+     * @param minAge smallest matching age, inclusive
+     * @param maxAge greatest matching age, inclusive
+     * @return this query
+     * @throws IllegalArgumentException with a descriptive error message if minAge is greater than
+     *                                  maxAge
+     */
+    public PatientQuery ages(int minAge, int maxAge) {
+        if (minAge > maxAge) {
+            throw new IllegalArgumentException("Invalid age range");
+        }
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Restricts this query to the PatientRecords having one of the given gender markers
+     *
+     * @param genders matching gender markers
+     * @return this query
+     */
+    public PatientQuery genders(char... genders) {
+        this.genders = genders.clone();
+        return this;
+    }
+
+    /**
+     * Restricts this query to the PatientRecords having one of the given triage levels
+     *
+     * @param levels matching triage levels
+     * @return this query
+     */
+    public PatientQuery triage(TriageLevel... levels) {
+        this.levels.clear();
+        for (TriageLevel level : levels) {
+            this.levels.add(level);
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether the given src.PatientRecord matches this query
+     *
+     * @param p src.PatientRecord to check
+     * @return {@code true} if p matches all the criteria of this query
+     */
+    public boolean matches(PatientRecord p) {
+        return matchesAges(p.getAge(), p.getAge()) > 0 && matchesGender(p.getGender())
+                && levels.contains(p.getTriage());
+    }
+
+    /**
+     * Compares a range of ages with the age range of this query
+     *
+     * @param low  smallest age of the range, inclusive
+     * @param high greatest age of the range, inclusive
+     * @return 0 if no age of the range matches, 1 if all of them match, and -1 if only some of them
+     *         match
+     */
+    int matchesAges(int low, int high) {
+        if (high < minAge || low > maxAge) {
+            return 0;
+        }
+        return low >= minAge && high <= maxAge ? 1 : -1;
+    }
+
+    /**
+     * Checks whether the given gender marker matches this query
+     *
+     * @param gender gender marker to check
+     * @return {@code true} if gender matches this query
+     */
+    boolean matchesGender(char gender) {
+        if (genders == null) {
+            return true;
+        }
+        for (char g : genders) {
+            if (g == gender) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the gender markers other than the given ones with the gender markers of this query
+     *
+     * @param markers gender markers to leave out
+     * @return 0 if no other gender marker matches, 1 if all of them match, and -1 if only some of
+     *         them match
+     */
+    int matchesOtherGenders(String markers) {
+        if (genders == null) {
+            return 1;
+        }
+        for (char g : genders) {
+            if (markers.indexOf(g) < 0) {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether the given triage level matches this query
+     *
+     * @param level triage level to check
+     * @return {@code true} if level matches this query
+     */
+    boolean matchesTriage(TriageLevel level) {
+        return levels.contains(level);
+    }
+}
@@ -1,18 +1,24 @@
 package src;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This class models src.PatientRecord objects to be managed in a priority queue at an urgent care service.
  *
+ * PatientRecords can be created concurrently by several intake threads: the order of arrival and
+ * the CASE_NUMBER of each new src.PatientRecord are allocated together by a single atomic increment
+ * of the patient counter, so that they are unique and ordered consistently.
  */
 public class PatientRecord implements Comparable<PatientRecord> {
     // data fields
-    private static int patientCounter = 1; // counts the number of patients created, Begins at 1, and
-                                           // advances to next value after each caseID is generated.
+    private static final AtomicInteger patientCounter = new AtomicInteger(1); // counts the number
+                                           // of patients created, Begins at 1, and advances to next
+                                           // value after each caseID is generated.
 
     /**
      * generated unique case number
      */
-    public final int CASE_NUMBER; // generated unique case number
+    public final long CASE_NUMBER; // generated unique case number
 
     private TriageLevel triage; // This patient's triage level // RED < YELLOW < GREEN
     private char gender; // This patient's single-character gender marker.
@@ -24,59 +30,110 @@ public class PatientRecord implements Comparable<PatientRecord> {
     private boolean hasBeenSeen; // tells whether this patient has been marked as "seen"
 
     /**
-     * Creates a new patient record and assigns it a CASE_NUMBER, as the counter will advance when the
-     * static helper method generateCaseNumber() is called.
+     * Creates a new patient record and assigns it a CASE_NUMBER, as the counter advances when a new
+     * patient record is created.
      *
      * @param gender a single character representing this patient's reported gender
      * @param age    the age of this patient in years
      * @param triage the triage level of this patient
      */
     public PatientRecord(char gender, int age, TriageLevel triage) {
+        int sequenceNumber = patientCounter.incrementAndGet();
+        this.gender = gender;
+        this.age = age;
+        this.triage = triage;
+        this.orderOfArrival = sequenceNumber - 1;
+        this.CASE_NUMBER = PatientRecord.encodeCaseNumber(gender, age, sequenceNumber);
+    }
+
+    /**
+     * Recreates a patient record saved by a src.AdmissionsJournal, with its original CASE_NUMBER and
+     * order of arrival. The patient counter is not advanced: after recovery, it must be restored with
+     * restoreCounter().
+     *
+     * @param caseNumber     the case number of the saved patient record
+     * @param gender         a single character representing this patient's reported gender
+     * @param age            the age of this patient in years
+     * @param triage         the triage level of this patient
+     * @param orderOfArrival the order of arrival of the saved patient record
+     */
+    PatientRecord(long caseNumber, char gender, int age, TriageLevel triage, int orderOfArrival) {
+        this.CASE_NUMBER = caseNumber;
         this.gender = gender;
         this.age = age;
         this.triage = triage;
-        this.orderOfArrival = patientCounter;
-        this.CASE_NUMBER = PatientRecord.generateCaseNumber(gender, age);
+        this.orderOfArrival = orderOfArrival;
     }
 
     /**
-     * Generates a five-digit case number for this patient using their reported gender and age.
+     * Generates a case number for a new patient using their reported gender and age, and advances
+     * the patient counter.
      *
      * The first digit of the case is based on gender marker: F=1, M=2, X=3. Any other gender marker
      * should be assigned the first digit of 4. The next two digits of the patient's age: 03 could
-     * mean a three-year-old or a 103-year-old The last two digits increment according to the number
-     * of patients admitted during this run of ExceptionalCare; the first patient should be 01,
-     * counting up to 99, and then wrapping around to 00.
+     * mean a three-year-old or a 103-year-old. The remaining digits are the sequence number of the
+     * patient during this run of the application, written on at least two digits: the first patient
+     * is 01, and the sequence number never wraps around.
      *
-     * Therefore, a 27-year-old nonbinary person who is the 20th patient of the day would be 32720.
+     * Therefore, a 27-year-old nonbinary person who is the 20th patient of the day would be 32720,
+     * and the 1234th patient of the day would be 3271234.
      *
      * @param gender a single-character representation of this patient's reported gender
      * @param age    the age of this patient in years
-     * @return a five-digit case number for the patient.
+     * @return a unique case number for the patient.
+     */
+    public static long generateCaseNumber(char gender, int age) {
+        return encodeCaseNumber(gender, age, patientCounter.incrementAndGet());
+    }
+
+    /**
+     * Advances the patient counter for a patient whose record is not created as an object, for
+     * instance one stored off-heap by src.OffHeapPriorityCareAdmissions. The order of arrival of the
+     * patient is the returned sequence number minus one.
+     *
+     * @return the sequence number of the new patient, to pass to encodeCaseNumber()
+     */
+    static int nextSequenceNumber() {
+        return patientCounter.incrementAndGet();
+    }
+
+    /**
+     * Encodes a case number from a gender marker, an age and a sequence number, as described in
+     * generateCaseNumber(). Since the gender and age always take the three leading digits, distinct
+     * sequence numbers always give distinct case numbers.
+     *
+     * @param gender         a single-character representation of the patient's reported gender
+     * @param age            the age of the patient in years
+     * @param sequenceNumber sequence number of the patient, a positive integer
+     * @return the case number of the patient
      */
-    public static int generateCaseNumber(char gender, int age) {
-        int caseNumber = 0;
+    static long encodeCaseNumber(char gender, int age, int sequenceNumber) {
+        long caseNumber;
 
         // add gender number
         switch (gender) {
             case 'F':
-                caseNumber = 10000;
+                caseNumber = 1;
                 break;
             case 'M':
-                caseNumber = 20000;
+                caseNumber = 2;
                 break;
             case 'X':
-                caseNumber = 30000;
+                caseNumber = 3;
                 break;
             default:
-                caseNumber = 40000;
+                caseNumber = 4;
         }
 
         // add age
-        caseNumber += (age % 100) * 100;
-        caseNumber += (++patientCounter) % 100;
+        caseNumber = caseNumber * 100 + (age % 100);
 
-        return caseNumber;
+        // add sequence number, on at least two digits
+        long scale = 100;
+        while (scale <= sequenceNumber) {
+            scale *= 10;
+        }
+        return caseNumber * scale + sequenceNumber;
     }
 
     /**
@@ -85,7 +142,28 @@ public class PatientRecord implements Comparable<PatientRecord> {
      * being called in a particular order.
      */
     public static void resetCounter() {
-        patientCounter = 1;
+        patientCounter.set(1);
+    }
+
+    /**
+     * Advances src.PatientRecord.patientCounter to the given value, if it is behind it, so that the
+     * patient records created after a recovery get orders of arrival and case numbers following those
+     * of the recovered ones.
+     *
+     * @param value value of the patient counter when the last recovered patient record was created
+     */
+    static void restoreCounter(int value) {
+        patientCounter.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the current value of src.PatientRecord.patientCounter, i.e. the order of arrival of the
+     * next patient record to be created
+     *
+     * @return the current value of the patient counter
+     */
+    static int currentCounter() {
+        return patientCounter.get();
     }
 
     /**
@@ -97,6 +175,17 @@ public class PatientRecord implements Comparable<PatientRecord> {
         return triage;
     }
 
+    /**
+     * Changes the triage level of this patient record. This method is package-private: a
+     * src.PatientRecord waiting in a queue must be re-triaged through
+     * src.PriorityCareAdmissions.updateTriage(), so that the queue can restore its ordering.
+     *
+     * @param triage the new triage level of this patient record
+     */
+    void setTriage(TriageLevel triage) {
+        this.triage = triage;
+    }
+
     /**
      * Accessor method for gender
      *
@@ -131,6 +220,15 @@ public class PatientRecord implements Comparable<PatientRecord> {
         this.hasBeenSeen = true;
     }
 
+    /**
+     * Tells whether this patient has been marked as seen
+     *
+     * @return {@code true} if seePatient() was called on this patient record
+     */
+    boolean hasBeenSeen() {
+        return hasBeenSeen;
+    }
+
     /**
      * Creates and returns a String representation of this src.PatientRecord formatted as follows:
      * CASE_NUMBER: <age><gender> (triage) - seen/not seen
@@ -161,6 +259,17 @@ public class PatientRecord implements Comparable<PatientRecord> {
                 && this.CASE_NUMBER == ((PatientRecord) other).CASE_NUMBER;
     }
 
+    /**
+     * Returns a hash code for this src.PatientRecord, consistent with equals(): PatientRecords having
+     * the same CASE_NUMBER have the same hash code.
+     *
+     * @return a hash code for this src.PatientRecord
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(CASE_NUMBER);
+    }
+
 
     /**
      * Compares this src.PatientRecord to another patientRecord provided as input.
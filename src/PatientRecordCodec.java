@@ -0,0 +1,115 @@
+package src;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width binary encoding of a src.PatientRecord, shared by src.AdmissionsJournal and
+ * src.AdmissionsSnapshot. Each src.PatientRecord takes RECORD_LENGTH bytes, in the byte order of the
+ * buffer:<BR/>
+ * <BR/>
+ * CASE_NUMBER (long) | gender (char) | age (int) | triage ordinal (byte) | order of arrival (int)
+ * | seen flag (byte)
+ */
+final class PatientRecordCodec {
+
+    /**
+     * Number of bytes of an encoded src.PatientRecord
+     */
+    static final int RECORD_LENGTH = 20;
+
+    /**
+     * Offset of the triage ordinal in an encoded src.PatientRecord
+     */
+    static final int ORDINAL_OFFSET = 14;
+
+    /**
+     * Offset of the order of arrival in an encoded src.PatientRecord
+     */
+    static final int ARRIVAL_OFFSET = 15;
+
+    private static final TriageLevel[] LEVELS = TriageLevel.values(); // triage levels by ordinal
+
+    /**
+     * Utility class, not instantiated
+     */
+    private PatientRecordCodec() {
+    }
+
+    /**
+     * Writes the given src.PatientRecord at the position of the buffer, with its current triage level
+     *
+     * @param buffer buffer to write to, having at least RECORD_LENGTH bytes remaining
+     * @param p      src.PatientRecord to encode
+     */
+    static void encode(ByteBuffer buffer, PatientRecord p) {
+        encode(buffer, p, p.getTriage().ordinal());
+    }
+
+    /**
+     * Writes the given src.PatientRecord at the position of the buffer, with the given triage level
+     *
+     * @param buffer  buffer to write to, having at least RECORD_LENGTH bytes remaining
+     * @param p       src.PatientRecord to encode
+     * @param ordinal ordinal of the triage level to record for p
+     */
+    static void encode(ByteBuffer buffer, PatientRecord p, int ordinal) {
+        encode(buffer, p.CASE_NUMBER, p.getGender(), p.getAge(), ordinal, p.getArrivalOrder(),
+                p.hasBeenSeen());
+    }
+
+    /**
+     * Writes the fields of a src.PatientRecord at the position of the buffer, without a
+     * src.PatientRecord object
+     *
+     * @param buffer     buffer to write to, having at least RECORD_LENGTH bytes remaining
+     * @param caseNumber CASE_NUMBER of the patient
+     * @param gender     gender marker of the patient
+     * @param age        age of the patient
+     * @param ordinal    ordinal of the triage level of the patient
+     * @param arrival    order of arrival of the patient
+     * @param seen       whether the patient has been seen
+     */
+    static void encode(ByteBuffer buffer, long caseNumber, char gender, int age, int ordinal,
+                       int arrival, boolean seen) {
+        buffer.putLong(caseNumber).putChar(gender).putInt(age).put((byte) ordinal).putInt(arrival)
+                .put((byte) (seen ? 1 : 0));
+    }
+
+    /**
+     * Computes the priority key of the src.PatientRecord encoded at the given index of the buffer,
+     * without decoding it (see src.PriorityCareAdmissions.priorityKey())
+     *
+     * @param buffer buffer holding the encoded src.PatientRecord
+     * @param index  index of the first byte of the encoded src.PatientRecord
+     * @return the priority key of the encoded src.PatientRecord
+     */
+    static long priorityKey(ByteBuffer buffer, int index) {
+        long ordinal = buffer.get(index + ORDINAL_OFFSET);
+        int arrival = buffer.getInt(index + ARRIVAL_OFFSET);
+        return (ordinal << 32) | ((arrival ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads a src.PatientRecord at the position of the buffer. The patient counter is not advanced.
+     *
+     * @param buffer buffer to read from, having at least RECORD_LENGTH bytes remaining
+     * @return the decoded src.PatientRecord
+     * @throws IllegalArgumentException if the encoded triage ordinal is not valid
+     */
+    static PatientRecord decode(ByteBuffer buffer) {
+        long caseNumber = buffer.getLong();
+        char gender = buffer.getChar();
+        int age = buffer.getInt();
+        int ordinal = buffer.get();
+        int arrival = buffer.getInt();
+        boolean seen = buffer.get() != 0;
+        if (ordinal < 0 || ordinal >= LEVELS.length) {
+            throw new IllegalArgumentException("Invalid triage ordinal: " + ordinal);
+        }
+        PatientRecord p = new PatientRecord(caseNumber, gender, age, LEVELS[ordinal], arrival);
+        if (seen) {
+            p.seePatient();
+        }
+        return p;
+    }
+}
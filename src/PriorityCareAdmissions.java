@@ -1,36 +1,219 @@
 package src;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Array-based min-heap implementation of a priority queue storing PatientRecords. Guarantees the
  * min-heap invariant, so that the src.PatientRecord at the root should be the smallest src.PatientRecord,
  * which corresponds to the element having the highest priority to be dequeued first, and children
- * always are greater than their parent. We rely on the src.PatientRecord.compareTo() method to compare
- * PatientRecords.
+ * always are greater than their parent. PatientRecords are ordered as defined by the
+ * src.PatientRecord.compareTo() method.
  * The root of a non-empty queue is always at index 0 of this array-heap.
+ *
+ * Next to the array of PatientRecords, the heap keeps a parallel array of primitive sort keys. The
+ * key of a src.PatientRecord packs its triage ordinal and its order of arrival into a single long
+ * (see priorityKey()), so that comparing two keys gives the same result as
+ * src.PatientRecord.compareTo(). The percolate operations only compare these keys.
+ *
+ * The heap is binary by default. It can also be built as a 4-ary or 8-ary heap, where the children
+ * of the node at index i are stored contiguously at indexes arity*i+1 to arity*i+arity. A wider
+ * heap is shallower, so percolating down scans more children per level but visits fewer levels.
+ *
+ * By default, a queue has a fixed capacity and rejects PatientRecords once it is full. A growable
+ * queue instead multiplies its capacity by a growth factor whenever it fills up, up to an optional
+ * maximum capacity, and gives memory back once it has drained after a surge.
+ *
+ * Whatever its capacity, a queue allocates its backing arrays lazily: a new queue holds no array
+ * slot at all, the arrays are allocated on the first addition, with MIN_ALLOCATION slots, and double
+ * as needed, up to the capacity. An idle or nearly empty queue therefore costs a few small objects,
+ * which matters when a whole hospital network runs one queue per ward, clinic or room.
+ *
+ * Iterating over a src.PriorityCareAdmissions queue lists its PatientRecords in priority order,
+ * without copying or modifying the heap.
+ *
+ * The heap is indexed: a primitive src.CaseIndex tracks the index of each src.PatientRecord in the
+ * array-heap by CASE_NUMBER, and is updated on every move. A waiting src.PatientRecord can be
+ * looked up in O(1) time, and re-triaged or removed in O(log n) time by percolating it from its
+ * current position. Case numbers are unique, unless PatientRecords are created again after
+ * src.PatientRecord.resetCounter(); if two waiting PatientRecords share a CASE_NUMBER, lookups find
+ * only one of them.
+ *
+ * The queue also keeps a census of its waiting PatientRecords (see src.CensusIndex): the number of
+ * PatientRecords of each triage level, updated and read in O(1) time, and the keys of each level in
+ * order of arrival, whose oldest one is read in O(1) amortized time. Keys are appended in O(1)
+ * amortized time, unless they arrive out of order within their level, as re-triaged
+ * PatientRecords do, and removed keys are found by a binary search and dropped lazily. The position
+ * in line of a waiting src.PatientRecord is counted in O(log n) time by an ordered index of the
+ * priority keys, built on the first call to rankOf() and then kept up to date.
+ *
+ * Optionally, the queue also maintains a secondary index by age band, gender marker and triage
+ * level (see src.PatientFilterIndex), so that a src.PatientQuery returns its matches in priority
+ * order without touching the PatientRecords which do not match.
+ *
+ * A patient who walks out can be cancelled lazily: cancel() only marks the slot of their
+ * src.PatientRecord as a tombstone (a null src.PatientRecord whose priority key is kept, so that the
+ * heap stays ordered), instead of percolating another src.PatientRecord into it. The heap itself is
+ * then updated in O(1) time, but the census and the optional indexes are updated at once, so that
+ * they stay exact: cancel() costs a binary search in the census, an O(log n) deletion from its
+ * ordered keys once rankOf() has been called, and a shift of the cell of the src.PatientRecord when
+ * the secondary index is enabled. The root of the heap is never a tombstone: tombstones reaching
+ * the root are removed on the way. Once tombstones exceed a configurable fraction of the slots in
+ * use, the array-heap is compacted in place and rebuilt in O(n) time. It is also compacted before
+ * an addition would grow the queue or find it full, so tombstones never count against its
+ * capacity. size() and the census only ever count the waiting PatientRecords.
  */
-public class PriorityCareAdmissions {
+public class PriorityCareAdmissions implements Iterable<PatientRecord> {
     private PatientRecord[] queue; // array min-heap of PatientRecords representing this priority
-    private int size; // size of this priority queue
+    private long[] keys; // keys[i] is the priority key of queue[i]
+    private CaseIndex positions; // index in queue of each CASE_NUMBER
+    private CensusIndex census; // counts and oldest arrival of each triage level
+    private PatientFilterIndex filters; // optional secondary index for queries, or null
+    private int capacity; // number of PatientRecords this queue can hold before growing
+    private int size; // number of slots of the array-heap in use, including tombstones
+    private int tombstones; // number of slots holding a cancelled src.PatientRecord
+    private double compactionThreshold; // fraction of tombstones among the slots in use
+                                        // beyond which the array-heap is compacted
+    private final int arityShift; // log2 of the number of children of each node (2, 4 or 8)
+    private int initialCapacity; // capacity this queue was created with, and shrinks back to
+    private int maxCapacity; // capacity beyond which a growable queue does not grow
+    private double growthFactor; // factor applied to the capacity when growing, 1.0 if fixed
+    private int modCount; // number of modifications of the heap, checked by ordered iterators
 
+    /**
+     * Largest capacity a growable src.PriorityCareAdmissions queue can reach
+     */
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Default fraction of tombstones among the slots of the array-heap beyond which it is compacted
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
+
+    private static final int MIN_ALLOCATION = 4; // length of the first backing arrays allocated
+    private static final PatientRecord[] NO_RECORDS = new PatientRecord[0]; // unallocated heap
+    private static final long[] NO_KEYS = new long[0]; // unallocated keys
 
     /**
-     * Creates a new empty src.PriorityCareAdmissions queue with the given capacity
+     * Creates a new empty src.PriorityCareAdmissions queue with the given capacity, organized as a
+     * binary heap
      *
      * @param capacity Capacity of this src.PriorityCareAdmissions queue
      * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
      *                                  positive integer
      */
     public PriorityCareAdmissions(int capacity) {
+        this(capacity, 2);
+    }
+
+    /**
+     * Creates a new empty src.PriorityCareAdmissions queue with the given capacity, organized as a
+     * d-ary heap whose nodes have the given number of children
+     *
+     * @param capacity Capacity of this src.PriorityCareAdmissions queue
+     * @param arity    number of children of each node of the heap: 2, 4 or 8
+     * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+     *                                  positive integer, or if the arity is not 2, 4 or 8
+     */
+    public PriorityCareAdmissions(int capacity, int arity) {
 
         if (capacity <= 0) {
             throw new IllegalArgumentException("Invalid capacity");
+        } else if (arity != 2 && arity != 4 && arity != 8) {
+            throw new IllegalArgumentException("Invalid arity: should be 2, 4 or 8");
         } else {
+            this.arityShift = Integer.numberOfTrailingZeros(arity);
             this.size = 0;
-            queue = new PatientRecord[capacity];
+            this.compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+            this.capacity = capacity;
+            this.initialCapacity = capacity;
+            this.maxCapacity = capacity;
+            this.growthFactor = 1.0;
+            queue = NO_RECORDS;
+            keys = NO_KEYS;
+            positions = new CaseIndex();
+            census = new CensusIndex();
+        }
+    }
+
+    /**
+     * Creates a new empty growable src.PriorityCareAdmissions queue. The queue starts with the given
+     * initial capacity. Whenever it is full, its capacity is multiplied by the growth factor, without
+     * exceeding maxCapacity. Once the queue has drained so that its size is less than its capacity
+     * divided by the square of the growth factor, the capacity is divided by the growth factor, but
+     * never below the initial capacity.
+     *
+     * @param initialCapacity initial capacity of this src.PriorityCareAdmissions queue
+     * @param arity           number of children of each node of the heap: 2, 4 or 8
+     * @param growthFactor    factor applied to the capacity each time the queue grows, greater than 1
+     * @param maxCapacity     capacity beyond which this queue does not grow, at most MAX_CAPACITY
+     *                        (pass MAX_CAPACITY for a queue without any maximum)
+     * @throws IllegalArgumentException with a descriptive error message if the initial capacity is
+     *                                  not a positive integer, if the arity is not 2, 4 or 8, if the
+     *                                  growth factor is not greater than 1, or if maxCapacity is not
+     *                                  in the range initialCapacity..MAX_CAPACITY
+     */
+    public PriorityCareAdmissions(int initialCapacity, int arity, double growthFactor,
+                                  int maxCapacity) {
+        this(initialCapacity, arity);
+        if (!(growthFactor > 1.0)) {
+            throw new IllegalArgumentException("Invalid growth factor: should be greater than 1");
+        }
+        if (maxCapacity < initialCapacity || maxCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid maximum capacity");
         }
+        this.growthFactor = growthFactor;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Creates a new src.PriorityCareAdmissions binary heap holding the given PatientRecords, with a
+     * capacity equal to the length of the given array. The heap is built bottom-up in O(n) time
+     * rather than by adding the PatientRecords one at a time. The given array is not modified.
+     *
+     * @param records PatientRecords to store in the new queue
+     * @throws NullPointerException     if records or any of its elements is null
+     * @throws IllegalArgumentException with a descriptive error message if records is empty
+     */
+    public PriorityCareAdmissions(PatientRecord[] records) {
+        this(records.length);
+        addAll(records);
+    }
+
+    /**
+     * Returns the priority key of the given src.PatientRecord. The triage ordinal is stored in the
+     * upper 32 bits and the order of arrival in the lower 32 bits, with its sign bit flipped so that
+     * negative orders of arrival still sort before positive ones. For any two PatientRecords a and
+     * b, {@code Long.compare(priorityKey(a), priorityKey(b))} has the same sign as
+     * {@code a.compareTo(b)}.
+     *
+     * @param p src.PatientRecord to compute the key of
+     * @return the priority key of p
+     */
+    static long priorityKey(PatientRecord p) {
+        return ((long) p.getTriage().ordinal() << 32)
+                | ((p.getArrivalOrder() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the order of arrival packed in the given priority key
+     *
+     * @param key priority key of a src.PatientRecord
+     * @return the order of arrival of that src.PatientRecord
+     */
+    static int arrivalOf(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
     }
 
     /**
@@ -39,7 +222,7 @@ public class PriorityCareAdmissions {
      * @return {@code true} if this src.PriorityCareAdmissions queue is empty
      */
     public boolean isEmpty() {
-        return this.size == 0;
+        return size() == 0;
     }
 
     /**
@@ -48,7 +231,7 @@ public class PriorityCareAdmissions {
      * @return the total number of PatientRecords stored in this src.PriorityCareAdmissions queue
      */
     public int size() {
-        return this.size;
+        return this.size - this.tombstones;
     }
 
     /**
@@ -57,16 +240,157 @@ public class PriorityCareAdmissions {
      * @return the capacity of this src.PriorityCareAdmissions queue
      */
     public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the length of the backing arrays currently allocated by this queue, which is at most
+     * its capacity <BR/>
+     *
+     * This method can be used for testing purposes.
+     *
+     * @return the number of array slots allocated by this queue
+     */
+    int allocatedLength() {
         return queue.length;
     }
 
+    /**
+     * Returns the arity of the heap of this src.PriorityCareAdmissions queue
+     *
+     * @return the number of children of each node of the heap: 2, 4 or 8
+     */
+    public int arity() {
+        return 1 << arityShift;
+    }
+
+    /**
+     * Checks whether this src.PriorityCareAdmissions queue grows when it is full
+     *
+     * @return {@code true} if this queue was created with a growth factor
+     */
+    public boolean isGrowable() {
+        return growthFactor > 1.0;
+    }
+
+    /**
+     * Returns the largest capacity this src.PriorityCareAdmissions queue can reach. For a queue which
+     * is not growable, this is its capacity.
+     *
+     * @return the maximum capacity of this queue
+     */
+    public int maxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Reduces the capacity of a growable src.PriorityCareAdmissions queue to its current size (or to
+     * 1 if it is empty), releasing the memory it reserved for a past surge. The queue grows again as
+     * needed. The capacity of a queue which is not growable never changes, so calling this method on
+     * such a queue has no effect.
+     */
+    public void trimToSize() {
+        if (tombstones > 0) {
+            compact();
+        }
+        if (isGrowable() && capacity > Math.max(size, 1)) {
+            resize(Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Changes the capacity of this queue, and shortens its backing arrays if they are longer than the
+     * new capacity
+     *
+     * @param newCapacity new capacity of this queue, greater than or equal to its size
+     */
+    private void resize(int newCapacity) {
+        capacity = newCapacity;
+        if (queue.length > newCapacity) {
+            queue = Arrays.copyOf(queue, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity);
+        }
+    }
+
+    /**
+     * Makes sure this queue can hold the given number of PatientRecords, growing its capacity by as
+     * many growth steps as needed if it is growable, and makes sure its backing arrays are long
+     * enough. The backing arrays are allocated lazily: they start empty, and double from
+     * MIN_ALLOCATION slots as PatientRecords are added, without exceeding the capacity.
+     *
+     * @param minCapacity number of PatientRecords this queue should be able to hold
+     * @return {@code true} if the capacity of this queue is at least minCapacity
+     */
+    private boolean ensureCapacity(long minCapacity) {
+        if (minCapacity > capacity) {
+            if (!isGrowable() || minCapacity > maxCapacity) {
+                return false;
+            }
+            long newCapacity = capacity;
+            while (newCapacity < minCapacity) {
+                newCapacity = Math.max((long) Math.ceil(newCapacity * growthFactor),
+                        newCapacity + 1);
+            }
+            capacity = (int) Math.min(newCapacity, maxCapacity);
+        }
+        if (minCapacity > queue.length) {
+            long length = Math.max(minCapacity, Math.max(MIN_ALLOCATION, 2L * queue.length));
+            queue = Arrays.copyOf(queue, (int) Math.min(length, capacity));
+            keys = Arrays.copyOf(keys, queue.length);
+        }
+        return true;
+    }
+
+    /**
+     * Makes sure the given number of PatientRecords can be added to this queue. The tombstones are
+     * removed first if the slots in use and the new PatientRecords would not fit in the current
+     * capacity, so that only the waiting PatientRecords count against it.
+     *
+     * @param count number of PatientRecords to add
+     * @return {@code true} if this queue can hold count more PatientRecords
+     */
+    private boolean ensureRoom(int count) {
+        if (tombstones > 0 && size + (long) count > capacity) {
+            compact();
+        }
+        return ensureCapacity(size + (long) count);
+    }
+
+    /**
+     * Shrinks a growable queue by its growth factor once its size has dropped under its capacity
+     * divided by the square of the growth factor. The gap between the growing and the shrinking
+     * thresholds keeps a queue whose size oscillates around a threshold from resizing repeatedly.
+     */
+    private void shrinkIfDrained() {
+        if (isGrowable() && capacity > initialCapacity
+                && size < capacity / (growthFactor * growthFactor)) {
+            resize(Math.max(initialCapacity, (int) (capacity / growthFactor)));
+        }
+    }
+
 
     /**
-     * Removes all the elements from this src.PriorityCareAdmissions queue
+     * Removes all the elements from this src.PriorityCareAdmissions queue, in O(size()) time. A
+     * growable queue goes back to its initial capacity, releasing the backing arrays of a past surge.
      */
     public void clear() {
-        Arrays.fill(queue, null);
+        if (isGrowable() && capacity > initialCapacity) {
+            capacity = initialCapacity;
+        }
+        if (queue.length > capacity) {
+            queue = NO_RECORDS;
+            keys = NO_KEYS;
+        } else {
+            Arrays.fill(queue, 0, size, null);
+        }
+        positions.clear();
+        census.clear();
+        if (filters != null) {
+            filters.clear();
+        }
         this.size = 0;
+        this.tombstones = 0;
+        modCount++;
     }
 
     /**
@@ -85,6 +409,28 @@ public class PriorityCareAdmissions {
         }
     }
 
+    /**
+     * Returns the k PatientRecords having the highest priority in this src.PriorityCareAdmissions
+     * queue, in priority order, without removing them. The heap is walked from its root with a small
+     * frontier heap of candidate indexes, so this takes O(k log k) time, leaves this queue untouched,
+     * and never copies the array-heap.
+     *
+     * @param k number of PatientRecords to return
+     * @return a list of the min(k, size()) PatientRecords having the highest priority, best first
+     * @throws IllegalArgumentException with a descriptive error message if k is negative
+     */
+    public List<PatientRecord> peek(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid number of PatientRecords");
+        }
+        int count = Math.min(k, size());
+        List<PatientRecord> best = new ArrayList<PatientRecord>(count);
+        OrderedIterator iterator = new OrderedIterator();
+        for (int i = 0; i < count; i++) {
+            best.add(queue[iterator.nextIndex()]);
+        }
+        return best;
+    }
 
     /**
      * Adds the given src.PatientRecord to this src.PriorityCareAdmissions queue at the correct position based
@@ -95,28 +441,143 @@ public class PriorityCareAdmissions {
      * @param p src.PatientRecord to add to this src.PriorityCareAdmissions queue
      * @throws NullPointerException  if the given src.PatientRecord is null
      * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
-     *                               if this src.PriorityCareAdmissions queue is full
+     *                               if this src.PriorityCareAdmissions queue is full and cannot grow
      */
     public void addPatient(PatientRecord p) {
 
         if (p == null) {
             throw new NullPointerException();
         }
-        if (size == this.capacity()) {
+        if (!ensureRoom(1)) {
             throw new IllegalStateException("Warning: Full Admissions Queue!");
         } else {
-            queue[size] = p;
+            long key = priorityKey(p);
             size++;
-            percolateUp(size - 1);
+            siftUp(size - 1, p, key);
+            census.add(key);
+            if (filters != null) {
+                filters.add(p);
+            }
+            modCount++;
+        }
+    }
+
+    /**
+     * Adds all the PatientRecords of the given collection to this src.PriorityCareAdmissions queue.
+     * The whole batch is validated once, before any src.PatientRecord is added, so that this queue is
+     * left unchanged if the batch is rejected.
+     *
+     * @param records PatientRecords to add to this src.PriorityCareAdmissions queue
+     * @throws NullPointerException  if records or any of its elements is null
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if this queue cannot hold all the given PatientRecords
+     */
+    public void addAll(Collection<PatientRecord> records) {
+        addAll(records.toArray(new PatientRecord[0]));
+    }
+
+    /**
+     * Adds all the PatientRecords of the given array to this src.PriorityCareAdmissions queue. The
+     * whole batch is validated once, before any src.PatientRecord is added, so that this queue is left
+     * unchanged if the batch is rejected.
+     *
+     * When the batch is large compared to the queue, the PatientRecords are appended and the whole
+     * heap is rebuilt bottom-up (Floyd's heapify) in O(n) time. Otherwise, each src.PatientRecord is
+     * percolated up from its leaf, in O(log n) time.
+     *
+     * @param records PatientRecords to add to this src.PriorityCareAdmissions queue
+     * @throws NullPointerException  if records or any of its elements is null
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if this queue cannot hold all the given PatientRecords
+     */
+    public void addAll(PatientRecord[] records) {
+        for (PatientRecord p : records) {
+            if (p == null) {
+                throw new NullPointerException();
+            }
+        }
+        if (!ensureRoom(records.length)) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+        int newSize = size + records.length;
+
+        int depth = 32 - Integer.numberOfLeadingZeros(newSize);
+        if ((long) records.length * depth > 2L * newSize) {
+            int first = size;
+            positions.ensureCapacity(newSize - tombstones);
+            for (PatientRecord p : records) {
+                queue[size] = p;
+                keys[size] = priorityKey(p);
+                positions.put(p.CASE_NUMBER, size);
+                if (filters != null) {
+                    filters.add(p);
+                }
+                size++;
+            }
+            census.addAll(keys, first, size);
+            heapify();
+            pruneRoot();
+        } else {
+            for (PatientRecord p : records) {
+                long key = priorityKey(p);
+                size++;
+                siftUp(size - 1, p, key);
+                census.add(key);
+                if (filters != null) {
+                    filters.add(p);
+                }
+            }
+        }
+        modCount++;
+    }
+
+    /**
+     * Moves all the waiting PatientRecords of the given queue into this src.PriorityCareAdmissions
+     * queue, for instance when two wards merge, and leaves the other queue empty. The priority keys
+     * only depend on the triage levels and the orders of arrival, so the merged queue serves the
+     * PatientRecords of both sources in their global order of arrival within each triage level.
+     *
+     * The PatientRecords are added with addAll(): when the other queue is large compared to this one,
+     * they are appended and the heap is rebuilt in O(n+m) time, rather than with one percolation
+     * per src.PatientRecord.
+     *
+     * @param other queue whose PatientRecords are moved into this queue
+     * @throws NullPointerException     if other is null
+     * @throws IllegalArgumentException with a descriptive error message if other is this queue
+     * @throws IllegalStateException    with a the exact error message "Warning: Full Admissions
+     *                                  Queue!" if this queue cannot hold all the PatientRecords of
+     *                                  other, in which case neither queue is modified
+     */
+    public void merge(PriorityCareAdmissions other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a queue into itself");
+        }
+        PatientRecord[] records = new PatientRecord[other.size()];
+        int count = 0;
+        for (int i = 0; i < other.size; i++) {
+            if (other.queue[i] != null) {
+                records[count++] = other.queue[i];
+            }
+        }
+        addAll(records);
+        other.clear();
+    }
+
+    /**
+     * Restores the min-heap invariant of the whole array-heap in O(n) time, by percolating down every
+     * internal node, from the last one up to the root.
+     */
+    private void heapify() {
+        for (int i = (size - 2) >> arityShift; i >= 0; i--) {
+            siftDown(i, queue[i], keys[i]);
         }
     }
 
     /**
-     * Recursive implementation of percolateUp() method. Restores the min-heap invariant of this
-     * priority queue by percolating a leaf up the heap. If the element at the given index does not
-     * violate the min-heap invariant (it is greater than its parent), then this method does not
-     * modify the heap. Otherwise, if there is a heap violation, swap the element with its parent and
-     * continue percolating the element up the heap.
+     * Restores the min-heap invariant of this priority queue by percolating a leaf up the heap. If
+     * the element at the given index does not violate the min-heap invariant (it is greater than its
+     * parent), then this method does not modify the heap. Otherwise, the element moves up the heap
+     * until it is greater than or equal to its parent.
      *
      * @param i index of the element in the heap to percolate upwards
      * @throws IndexOutOfBoundsException if index is out of bounds (out of the range 0..size()-1
@@ -127,21 +588,31 @@ public class PriorityCareAdmissions {
         if (i >= size || i < 0) {
             throw new IndexOutOfBoundsException();
         } else {
-            if (i > 0) {
-                PatientRecord temp;
-                int parentPosition = (i - 1) / 2;
-                if (queue[parentPosition].compareTo(queue[i]) > 0) {
-                    temp = queue[parentPosition];
-                    queue[parentPosition] = queue[i];
-                    queue[i] = temp;
-                    percolateUp(parentPosition);
-                } else {
-                    return;
-                }
-            } else {
-                return;
+            siftUp(i, queue[i], keys[i]);
+            modCount++;
+        }
+    }
+
+    /**
+     * Iterative implementation of percolateUp(). Rather than swapping the moving element with its
+     * parent at each level, the element is carried in a "hole": each parent greater than it is moved
+     * down into the hole, and the element is written only once, in its final position.
+     *
+     * @param hole index of the hole the element is percolated up from
+     * @param p    src.PatientRecord to place in the heap
+     * @param key  priority key of p
+     */
+    private void siftUp(int hole, PatientRecord p, long key) {
+        while (hole > 0) {
+            int parentPosition = (hole - 1) >> arityShift;
+            long parentKey = keys[parentPosition];
+            if (parentKey <= key) {
+                break;
             }
+            place(hole, queue[parentPosition], parentKey);
+            hole = parentPosition;
         }
+        place(hole, p, key);
     }
 
     /**
@@ -159,21 +630,140 @@ public class PriorityCareAdmissions {
             throw new NoSuchElementException("Warning: Empty Admissions Queue!");
         } else {
             PatientRecord recordToBeRemoved = queue[0];
-            queue[0] = queue[size - 1];
-            queue[size - 1] = null;
+            positions.remove(recordToBeRemoved.CASE_NUMBER, 0);
+            census.remove(keys[0]);
+            if (filters != null) {
+                filters.remove(recordToBeRemoved);
+            }
             size--;
-            percolateDown(0);
+            PatientRecord last = queue[size];
+            queue[size] = null;
+            if (size > 0) {
+                siftDown(0, last, keys[size]);
+            }
+            pruneRoot();
+            shrinkIfDrained();
+            modCount++;
             return recordToBeRemoved;
         }
     }
 
 
     /**
-     * Recursive implementation of percolateDown() method. Restores the min-heap of the priority queue
-     * by percolating its root down the tree. If the element at the given index does not violate the
-     * min-heap ordering property (it is smaller than its smallest child), then this method does not
-     * modify the heap. Otherwise, if there is a heap violation, then swap the element with the
-     * correct child and continue percolating the element down the heap.
+     * Removes at most the given number of PatientRecords from this src.PriorityCareAdmissions queue,
+     * in priority order, and adds them to the given collection, as if removeBestRecord() were called
+     * maxElements times.
+     *
+     * When only a few PatientRecords are drained, each one is removed from the root. When a large
+     * fraction of the queue is drained, the drained PatientRecords are listed in order by walking the
+     * heap, the remaining ones are compacted, and the heap is rebuilt with a single O(n) heapify
+     * rather than one percolation per drained src.PatientRecord.
+     *
+     * @param c           collection to add the drained PatientRecords to
+     * @param maxElements maximum number of PatientRecords to drain
+     * @return the number of PatientRecords drained
+     * @throws NullPointerException if c is null
+     */
+    public int drainTo(Collection<? super PatientRecord> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        int count = Math.min(Math.max(maxElements, 0), size());
+        if (count == 0) {
+            return 0;
+        }
+        int depth = 32 - Integer.numberOfLeadingZeros(size);
+        if ((long) count * depth <= 2L * size) {
+            for (int i = 0; i < count; i++) {
+                c.add(removeBestRecord());
+            }
+            return count;
+        }
+
+        boolean[] drained = new boolean[size];
+        OrderedIterator iterator = new OrderedIterator();
+        for (int i = 0; i < count; i++) {
+            int index = iterator.nextIndex();
+            drained[index] = true;
+            c.add(queue[index]);
+        }
+        removeAll(drained);
+        return count;
+    }
+
+    /**
+     * Removes all the PatientRecords of the given triage level from this src.PriorityCareAdmissions
+     * queue, and returns them in priority order. The array-heap is scanned once, the remaining
+     * PatientRecords are compacted, and the heap is rebuilt with a single O(n) heapify.
+     *
+     * @param level triage level of the PatientRecords to remove
+     * @return the removed PatientRecords, in priority order
+     * @throws NullPointerException if level is null
+     */
+    public List<PatientRecord> drainLevel(TriageLevel level) {
+        if (level == null) {
+            throw new NullPointerException();
+        }
+        boolean[] drained = new boolean[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (queue[i] != null && queue[i].getTriage() == level) {
+                drained[i] = true;
+                count++;
+            }
+        }
+        PatientRecord[] records = new PatientRecord[count];
+        count = 0;
+        for (int i = 0; i < size; i++) {
+            if (drained[i]) {
+                records[count++] = queue[i];
+            }
+        }
+        if (count > 0) {
+            removeAll(drained);
+        }
+        Arrays.sort(records);
+        return new ArrayList<PatientRecord>(Arrays.asList(records));
+    }
+
+    /**
+     * Removes the PatientRecords stored at the marked indexes of the array-heap, and all the
+     * tombstones. The remaining PatientRecords are moved to the front of the array, keeping their
+     * relative order, and the heap is rebuilt bottom-up.
+     *
+     * @param removed removed[i] is true if the src.PatientRecord at index i must be removed, or null
+     *                to only remove the tombstones
+     */
+    private void removeAll(boolean[] removed) {
+        for (int i = 0; removed != null && i < size; i++) {
+            if (removed[i]) {
+                positions.remove(queue[i].CASE_NUMBER, i);
+                census.remove(keys[i]);
+                if (filters != null) {
+                    filters.remove(queue[i]);
+                }
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (queue[i] != null && (removed == null || !removed[i])) {
+                place(kept++, queue[i], keys[i]);
+            }
+        }
+        Arrays.fill(queue, kept, size, null);
+        size = kept;
+        tombstones = 0;
+        heapify();
+        shrinkIfDrained();
+        modCount++;
+    }
+
+    /**
+     * Restores the min-heap of the priority queue by percolating an element down the tree. If the
+     * element at the given index does not violate the min-heap ordering property (it is smaller than
+     * its smallest child), then this method does not modify the heap. Otherwise, the element moves
+     * down the heap, in place of its smallest child, until it is smaller than or equal to all of its
+     * children.
      *
      * @param i index of the element in the heap to percolate downwards
      * @throws IndexOutOfBoundsException if index is out of bounds (out of the range 0..size()-1
@@ -183,34 +773,412 @@ public class PriorityCareAdmissions {
 
         if (i > size || i < 0) {
             throw new IndexOutOfBoundsException();
+        } else if (i < size) {
+            siftDown(i, queue[i], keys[i]);
+            modCount++;
+        }
+    }
+
+    /**
+     * Iterative implementation of percolateDown(). The element is carried in a "hole": at each level
+     * the smallest child smaller than the element is moved up into the hole, and the element is
+     * written only once, in its final position. The children of a node are contiguous, so each level
+     * scans a single group of at most arity() keys.
+     *
+     * @param hole index of the hole the element is percolated down from
+     * @param p    src.PatientRecord to place in the heap
+     * @param key  priority key of p
+     */
+    private void siftDown(int hole, PatientRecord p, long key) {
+        int arity = 1 << arityShift;
+        int firstChildPosition;
+        while ((firstChildPosition = (hole << arityShift) + 1) < size) {
+            int lastChildPosition = Math.min(firstChildPosition + arity, size);
+
+            // pick the smallest child (the leftmost one on ties)
+            int smallestChild = firstChildPosition;
+            long smallestKey = keys[firstChildPosition];
+            for (int child = firstChildPosition + 1; child < lastChildPosition; child++) {
+                if (keys[child] < smallestKey) {
+                    smallestChild = child;
+                    smallestKey = keys[child];
+                }
+            }
+
+            if (key <= smallestKey) {
+                break;
+            }
+            place(hole, queue[smallestChild], smallestKey);
+            hole = smallestChild;
+        }
+        place(hole, p, key);
+    }
+
+    /**
+     * Stores the given src.PatientRecord and its priority key at the given index of the array-heap,
+     * and records that index as the position of its CASE_NUMBER
+     *
+     * @param index index of the array-heap to write
+     * @param p     src.PatientRecord to store
+     * @param key   priority key of p
+     */
+    private void place(int index, PatientRecord p, long key) {
+        queue[index] = p;
+        keys[index] = key;
+        if (p != null) {
+            positions.put(p.CASE_NUMBER, index);
+        }
+    }
+
+    /**
+     * Cancels the waiting src.PatientRecord having the given CASE_NUMBER, for instance a patient who
+     * walked out without being seen. Unless it is at the root, the src.PatientRecord is only marked
+     * as a tombstone in its slot of the array-heap, without moving any other src.PatientRecord: it is
+     * no longer counted, found or listed, and its slot is reclaimed when the tombstone reaches the
+     * root or when the array-heap is compacted. The heap is updated in O(1) time, but the census and
+     * the secondary index are updated at once: this costs a binary search among the keys of the
+     * triage level of the src.PatientRecord, plus an O(log n) deletion from the ordered keys of the
+     * census once rankOf() has been called, plus a shift of the rest of its cell of the secondary
+     * index if it is enabled.
+     *
+     * @param caseNumber CASE_NUMBER of the src.PatientRecord to cancel
+     * @return the cancelled src.PatientRecord
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public PatientRecord cancel(long caseNumber) {
+        int index = indexOf(caseNumber);
+        if (index == 0 || index == size - 1) {
+            return remove(caseNumber); // no other src.PatientRecord moves
+        }
+        PatientRecord cancelled = queue[index];
+        positions.remove(caseNumber, index);
+        census.remove(keys[index]);
+        if (filters != null) {
+            filters.remove(cancelled);
+        }
+        queue[index] = null;
+        tombstones++;
+        if (tombstones > compactionThreshold * size) {
+            compact();
+        }
+        modCount++;
+        return cancelled;
+    }
+
+    /**
+     * Returns the fraction of tombstones among the slots in use of the array-heap beyond which it is
+     * compacted
+     *
+     * @return the compaction threshold of this queue
+     */
+    public double compactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the fraction of tombstones among the slots in use of the array-heap beyond which it is
+     * compacted. A low threshold keeps the array-heap dense, a high one makes compactions rarer
+     * during a spike of walk-outs.
+     *
+     * @param compactionThreshold fraction of tombstones triggering a compaction, in the range 0..1
+     * @throws IllegalArgumentException with a descriptive error message if compactionThreshold is
+     *                                  not in the range 0..1
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (!(compactionThreshold >= 0.0 && compactionThreshold <= 1.0)) {
+            throw new IllegalArgumentException("Invalid compaction threshold");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Removes all the tombstones from the array-heap, moving the waiting PatientRecords to the front
+     * of the array, and rebuilds the heap bottom-up in O(n) time
+     */
+    private void compact() {
+        removeAll(null);
+    }
+
+    /**
+     * Removes the tombstones at the root of the heap, until the root holds a waiting
+     * src.PatientRecord or the heap is empty
+     */
+    private void pruneRoot() {
+        while (size > 0 && queue[0] == null) {
+            tombstones--;
+            size--;
+            PatientRecord last = queue[size];
+            queue[size] = null;
+            if (size > 0) {
+                siftDown(0, last, keys[size]);
+            }
+        }
+    }
+
+    /**
+     * Changes the triage level of the waiting src.PatientRecord having the given CASE_NUMBER, and
+     * moves it to its new position in this queue in O(log n) time, by percolating it up or down from
+     * its current position.
+     *
+     * @param caseNumber CASE_NUMBER of the src.PatientRecord to re-triage
+     * @param newLevel   new triage level of this src.PatientRecord
+     * @throws NullPointerException   if newLevel is null
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public void updateTriage(long caseNumber, TriageLevel newLevel) {
+        if (newLevel == null) {
+            throw new NullPointerException();
+        }
+        int index = indexOf(caseNumber);
+        PatientRecord p = queue[index];
+        if (filters != null) {
+            filters.remove(p);
+        }
+        p.setTriage(newLevel);
+        if (filters != null) {
+            filters.add(p);
+        }
+        long newKey = priorityKey(p);
+        census.remove(keys[index]);
+        census.add(newKey);
+        if (newKey < keys[index]) {
+            siftUp(index, p, newKey);
         } else {
-            PatientRecord temp;
-            int leftChildPosition = (2 * i) + 1;
-            int rightChildPosition = (2 * i) + 2;
-            int positionToSwapWith;
-
-            if (leftChildPosition > size - 1) {
-                return;
-            }
-            else {
-                if (rightChildPosition > size - 1) {
-                    positionToSwapWith = leftChildPosition;
-                } else {
-                    if (queue[leftChildPosition].compareTo(queue[rightChildPosition]) <= 0) {
-                        positionToSwapWith = leftChildPosition;
-                    } else {
-                        positionToSwapWith = rightChildPosition;
-                    }
+            siftDown(index, p, newKey);
+            pruneRoot();
+        }
+        modCount++;
+    }
+
+    /**
+     * Returns the number of PatientRecords of the given triage level waiting in this queue, in O(1)
+     * time
+     *
+     * @param level triage level to count
+     * @return the number of waiting PatientRecords of this triage level
+     */
+    public int countByTriage(TriageLevel level) {
+        return census.count(level.ordinal());
+    }
+
+    /**
+     * Returns a snapshot of the census of this queue: the number of waiting PatientRecords of each
+     * triage level and the order of arrival of the oldest one of each level, read from the census
+     * in O(1) amortized time, without searching the heap.
+     *
+     * @return a src.TriageCensus snapshot of this queue
+     */
+    public TriageCensus snapshotStats() {
+        int levels = TriageLevel.values().length;
+        int[] counts = new int[levels];
+        long[] oldestKeys = new long[levels];
+        for (int level = 0; level < levels; level++) {
+            counts[level] = census.count(level);
+            oldestKeys[level] = census.oldestKey(level);
+        }
+        return new TriageCensus(counts, oldestKeys);
+    }
+
+    /**
+     * Builds a secondary index of the PatientRecords waiting in this queue, by age band, gender
+     * marker and triage level, and keeps it up to date as PatientRecords are added and removed. The
+     * index speeds up query(), at the cost of a second insertion and removal per src.PatientRecord,
+     * in O(1) time for arrivals and dequeues. Enabling the index again rebuilds it with the new age
+     * band width.
+     *
+     * @param ageBandWidth number of consecutive ages sharing a cell of the index, 1 for one cell per
+     *                     age. Queries whose age range is not aligned on the bands check the
+     *                     PatientRecords of the partly covered bands one by one.
+     * @throws IllegalArgumentException with a descriptive error message if ageBandWidth is not a
+     *                                  positive integer
+     */
+    public void enableSecondaryIndex(int ageBandWidth) {
+        PatientFilterIndex index = new PatientFilterIndex(ageBandWidth);
+        for (int i = 0; i < size; i++) {
+            if (queue[i] != null) {
+                index.add(queue[i]);
+            }
+        }
+        filters = index;
+    }
+
+    /**
+     * Drops the secondary index of this queue, if any. Queries then scan the whole queue.
+     */
+    public void disableSecondaryIndex() {
+        filters = null;
+    }
+
+    /**
+     * Checks whether this queue maintains a secondary index for queries
+     *
+     * @return {@code true} if enableSecondaryIndex() was called and the index was not dropped since
+     */
+    public boolean hasSecondaryIndex() {
+        return filters != null;
+    }
+
+    /**
+     * Returns all the waiting PatientRecords matching the given query, in priority order
+     *
+     * @param query criteria the PatientRecords must match
+     * @return a list of the matching PatientRecords, best first
+     * @throws NullPointerException if query is null
+     */
+    public List<PatientRecord> query(PatientQuery query) {
+        return query(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the first waiting PatientRecords matching the given query, in priority order. With a
+     * secondary index, only the cells of the index matching the query are read. Without one, the
+     * queue is walked in priority order until enough matches are found.
+     *
+     * @param query       criteria the PatientRecords must match
+     * @param maxElements maximum number of PatientRecords to return
+     * @return a list of at most maxElements matching PatientRecords, best first
+     * @throws NullPointerException if query is null
+     */
+    public List<PatientRecord> query(PatientQuery query, int maxElements) {
+        if (query == null) {
+            throw new NullPointerException();
+        }
+        List<PatientRecord> matches = new ArrayList<PatientRecord>();
+        if (filters != null) {
+            filters.query(query, maxElements, matches);
+        } else {
+            OrderedIterator iterator = new OrderedIterator();
+            while (matches.size() < maxElements && iterator.hasNext()) {
+                PatientRecord p = iterator.next();
+                if (query.matches(p)) {
+                    matches.add(p);
                 }
             }
+        }
+        return matches;
+    }
+
+    /**
+     * Removes and returns the waiting src.PatientRecord having the given CASE_NUMBER, for instance a
+     * patient who left without being seen. The last src.PatientRecord of the array-heap takes its
+     * place and is percolated up or down from there, in O(log n) time.
+     *
+     * @param caseNumber CASE_NUMBER of the src.PatientRecord to remove
+     * @return the removed src.PatientRecord
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public PatientRecord remove(long caseNumber) {
+        int index = indexOf(caseNumber);
+        PatientRecord recordToBeRemoved = queue[index];
+        long removedKey = keys[index];
+        positions.remove(caseNumber, index);
+        census.remove(removedKey);
+        if (filters != null) {
+            filters.remove(recordToBeRemoved);
+        }
+        size--;
+        PatientRecord last = queue[size];
+        long lastKey = keys[size];
+        queue[size] = null;
+        if (index < size) {
+            if (lastKey < removedKey) {
+                siftUp(index, last, lastKey);
+            } else {
+                siftDown(index, last, lastKey);
+            }
+        }
+        pruneRoot();
+        shrinkIfDrained();
+        modCount++;
+        return recordToBeRemoved;
+    }
+
+    /**
+     * Returns the index in the array-heap of the waiting src.PatientRecord having the given
+     * CASE_NUMBER
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the index of the src.PatientRecord having this CASE_NUMBER
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    private int indexOf(long caseNumber) {
+        int index = positions.get(caseNumber);
+        if (index < 0) {
+            throw new NoSuchElementException("No waiting patient with case number " + caseNumber);
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether a src.PatientRecord having the given CASE_NUMBER is waiting in this queue, in
+     * O(1) time
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return {@code true} if a src.PatientRecord having this CASE_NUMBER is waiting in this queue
+     */
+    public boolean contains(long caseNumber) {
+        return positions.get(caseNumber) >= 0;
+    }
+
+    /**
+     * Returns the waiting src.PatientRecord having the given CASE_NUMBER, in O(1) time
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the src.PatientRecord having this CASE_NUMBER, or null if there is no such
+     *         src.PatientRecord waiting in this queue
+     */
+    public PatientRecord get(long caseNumber) {
+        int index = positions.get(caseNumber);
+        return index < 0 ? null : queue[index];
+    }
+
+    /**
+     * Returns the current index in the array-heap of the waiting src.PatientRecord having the given
+     * CASE_NUMBER, in O(1) time. The index of a src.PatientRecord changes as the heap is modified.
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the index of the src.PatientRecord having this CASE_NUMBER, or -1 if there is no such
+     *         src.PatientRecord waiting in this queue
+     */
+    public int positionOf(long caseNumber) {
+        return positions.get(caseNumber);
+    }
 
-            if (queue[i].compareTo(queue[positionToSwapWith]) > 0) {
-                temp = queue[positionToSwapWith];
-                queue[positionToSwapWith] = queue[i];
-                queue[i] = temp;
-                percolateDown(positionToSwapWith);
+    /**
+     * Returns the position in line of the waiting src.PatientRecord having the given CASE_NUMBER,
+     * i.e. the exact number of waiting PatientRecords which will be dequeued before it. The
+     * src.PatientRecord is located through the case index, and the PatientRecords ahead of it are
+     * counted by the census, which is ordered like the heap (by triage level, then by order of
+     * arrival), in O(log n) time. The first call builds the ordered index of the census in
+     * O(n log n) time; from then on, every addition and removal keeps it up to date in O(log n)
+     * time.
+     *
+     * @param caseNumber CASE_NUMBER to look up
+     * @return the number of PatientRecords ahead of the src.PatientRecord having this CASE_NUMBER, 0
+     *         if it is the next one to be dequeued
+     * @throws NoSuchElementException if no src.PatientRecord having this CASE_NUMBER is waiting in
+     *                                this queue
+     */
+    public int rankOf(long caseNumber) {
+        int index = indexOf(caseNumber);
+        if (!census.isOrdered()) {
+            int count = 0;
+            long[] waiting = keys;
+            if (tombstones > 0) {
+                waiting = new long[size - tombstones];
+                for (int i = 0; i < size; i++) {
+                    if (queue[i] != null) {
+                        waiting[count++] = keys[i];
+                    }
+                }
             }
+            census.enableOrder(waiting, 0, size - tombstones);
         }
+        return census.countBelow(keys[index]);
     }
 
 
@@ -224,12 +1192,48 @@ public class PriorityCareAdmissions {
      *         admissions queue has the same length and size as this queue.
      */
     public PriorityCareAdmissions deepCopy() {
-        PriorityCareAdmissions deepCopy = new PriorityCareAdmissions(this.capacity());
+        PriorityCareAdmissions deepCopy = new PriorityCareAdmissions(this.capacity(), this.arity());
         deepCopy.queue = Arrays.copyOf(this.queue, this.queue.length);
+        deepCopy.keys = Arrays.copyOf(this.keys, this.keys.length);
+        deepCopy.positions = new CaseIndex(this.positions);
+        deepCopy.census = new CensusIndex(this.census);
+        deepCopy.filters = this.filters == null ? null : new PatientFilterIndex(this.filters);
+        deepCopy.initialCapacity = this.initialCapacity;
+        deepCopy.maxCapacity = this.maxCapacity;
+        deepCopy.growthFactor = this.growthFactor;
         deepCopy.size = this.size;
+        deepCopy.tombstones = this.tombstones;
+        deepCopy.compactionThreshold = this.compactionThreshold;
         return deepCopy;
     }
 
+    /**
+     * Copies the waiting PatientRecords of this queue and their priority keys into the given arrays,
+     * in heap order, skipping the tombstones. The keys record the triage level of each
+     * src.PatientRecord at the time of the copy.
+     *
+     * @param records array to copy the PatientRecords to
+     * @param keys    array to copy the priority keys to
+     * @param offset  index of the arrays to copy the first src.PatientRecord to
+     * @return the number of PatientRecords copied, i.e. size()
+     */
+    int copyRecords(PatientRecord[] records, long[] keys, int offset) {
+        if (tombstones == 0) {
+            System.arraycopy(this.queue, 0, records, offset, size);
+            System.arraycopy(this.keys, 0, keys, offset, size);
+            return size;
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (queue[i] != null) {
+                records[offset + count] = queue[i];
+                keys[offset + count] = this.keys[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns a deep copy of the array-heap of this src.PriorityCareAdmissions queue <BR/>
      *
@@ -238,9 +1242,51 @@ public class PriorityCareAdmissions {
      * @return a deep copy of the array-heap storing the ParientRecords in this queue
      */
     protected PatientRecord[] arrayHeapCopy() {
-        return Arrays.copyOf(this.queue, this.queue.length);
+        return Arrays.copyOf(this.queue, this.capacity);
 
     }
+    /**
+     * Returns an iterator over the PatientRecords of this src.PriorityCareAdmissions queue, in order
+     * from smallest to greatest, i.e. in the order removeBestRecord() would return them. The iterator
+     * neither copies nor modifies the heap: it walks the heap lazily, keeping a small frontier of the
+     * heap indexes whose parents have already been returned. Listing the k first PatientRecords costs
+     * O(k log k) time.
+     *
+     * The returned iterator is fail-fast: it throws a ConcurrentModificationException if this queue
+     * is modified after the iterator was created.
+     *
+     * @return an iterator over the PatientRecords of this queue, in priority order
+     */
+    @Override
+    public Iterator<PatientRecord> iterator() {
+        return new OrderedIterator();
+    }
+
+    /**
+     * Returns a sequential ordered Stream over the PatientRecords of this src.PriorityCareAdmissions
+     * queue, in order from smallest to greatest. The stream is backed by iterator().
+     *
+     * @return a Stream of the PatientRecords of this queue, in priority order
+     */
+    public Stream<PatientRecord> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Writes the PatientRecords of this src.PriorityCareAdmissions queue to the given Appendable, each
+     * on a separate line, in order from smallest to greatest. The lines are streamed one at a time,
+     * so no String holding the whole list is built.
+     *
+     * @param out the Appendable to write to
+     * @throws IOException if the Appendable throws an IOException
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (PatientRecord p : this) {
+            out.append(p.toString()).append('\n');
+        }
+    }
+
     /**
      * Returns a String representing this src.PriorityCareAdmissions queue, where each element
      * (src.PatientRecord) of the queue is listed on a separate line, in order from smallest to greatest.
@@ -248,20 +1294,145 @@ public class PriorityCareAdmissions {
      * @return a String representing this src.PriorityCareAdmissions queue, and an empty String "" if this
      *         queue is empty.
      */
+    @Override
     public String toString() {
-        String patientList = "";
+        StringBuilder patientList = new StringBuilder();
+        try {
+            writeTo(patientList);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never happens, StringBuilder does not throw
+        }
+        return patientList.toString();
+    }
 
-        if (isEmpty()) {
-            return "";
+    /**
+     * Iterator over the PatientRecords of this queue in priority order. The frontier is a small
+     * min-heap of heap indexes ordered by their priority keys. It starts with the root. Each call to
+     * next() removes the smallest index of the frontier and adds its children, which are the only
+     * new candidates for the next smallest src.PatientRecord. Tombstones are skipped, but their
+     * children still become candidates.
+     */
+    private class OrderedIterator implements Iterator<PatientRecord> {
+        private int[] frontier; // min-heap of heap indexes, ordered by their priority keys
+        private long[] frontierKeys; // frontierKeys[j] is the priority key of frontier[j]
+        private int frontierSize; // number of heap indexes in the frontier
+        private final int expectedModCount; // modCount of the queue when this iterator was created
+
+        /**
+         * Creates an iterator whose frontier holds the root of the heap, if any
+         */
+        private OrderedIterator() {
+            int initialLength = Math.max(1, Math.min(size, 16));
+            this.frontier = new int[initialLength];
+            this.frontierKeys = new long[initialLength];
+            this.expectedModCount = modCount;
+            if (size > 0) {
+                push(0);
+            }
         }
-        PriorityCareAdmissions deepCopy = this.deepCopy();
 
-        for (int i = 0; i < size; i++) {
-            patientList = patientList + deepCopy.removeBestRecord().toString() + "\n";
+        @Override
+        public boolean hasNext() {
+            if (modCount == expectedModCount) {
+                skipTombstones();
+            }
+            return frontierSize > 0;
         }
-        return patientList;
 
-    }
+        @Override
+        public PatientRecord next() {
+            return queue[nextIndex()];
+        }
+
+        /**
+         * Returns the heap index of the next src.PatientRecord in priority order
+         *
+         * @return the index in the array-heap of the next src.PatientRecord
+         */
+        private int nextIndex() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            skipTombstones();
+            if (frontierSize == 0) {
+                throw new NoSuchElementException();
+            }
+            return pop();
+        }
+
+        /**
+         * Pops the tombstones at the top of the frontier, so that the top of the frontier, if any,
+         * is the index of a waiting src.PatientRecord. The children of a tombstone are still
+         * candidates.
+         */
+        private void skipTombstones() {
+            while (frontierSize > 0 && queue[frontier[0]] == null) {
+                pop();
+            }
+        }
 
+        /**
+         * Removes the smallest heap index from the frontier, and adds its children to the frontier
+         *
+         * @return the removed heap index
+         */
+        private int pop() {
+            int index = frontier[0];
 
+            // pop the smallest index of the frontier
+            frontierSize--;
+            if (frontierSize > 0) {
+                int last = frontier[frontierSize];
+                long lastKey = frontierKeys[frontierSize];
+                int hole = 0;
+                int child;
+                while ((child = 2 * hole + 1) < frontierSize) {
+                    if (child + 1 < frontierSize && frontierKeys[child + 1] < frontierKeys[child]) {
+                        child++;
+                    }
+                    if (lastKey <= frontierKeys[child]) {
+                        break;
+                    }
+                    frontier[hole] = frontier[child];
+                    frontierKeys[hole] = frontierKeys[child];
+                    hole = child;
+                }
+                frontier[hole] = last;
+                frontierKeys[hole] = lastKey;
+            }
+
+            // its children become candidates
+            int firstChild = (index << arityShift) + 1;
+            int lastChild = Math.min(firstChild + (1 << arityShift), size);
+            for (int child = firstChild; child < lastChild; child++) {
+                push(child);
+            }
+            return index;
+        }
+
+        /**
+         * Adds the given heap index to the frontier
+         *
+         * @param index index of the heap to add
+         */
+        private void push(int index) {
+            if (frontierSize == frontier.length) {
+                frontier = Arrays.copyOf(frontier, frontier.length * 2);
+                frontierKeys = Arrays.copyOf(frontierKeys, frontierKeys.length * 2);
+            }
+            long key = keys[index];
+            int hole = frontierSize++;
+            while (hole > 0) {
+                int parent = (hole - 1) / 2;
+                if (frontierKeys[parent] <= key) {
+                    break;
+                }
+                frontier[hole] = frontier[parent];
+                frontierKeys[hole] = frontierKeys[parent];
+                hole = parent;
+            }
+            frontier[hole] = index;
+            frontierKeys[hole] = key;
+        }
+    }
 }
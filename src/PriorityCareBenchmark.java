@@ -0,0 +1,602 @@
+package src;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a Utility class which contains micro-benchmarks used to tune the admissions queues. It
+ * is not part of the application, and is run from the command line:<BR/>
+ * <BR/>
+ * java src.PriorityCareBenchmark arity [size ...] <BR/>
+ * java src.PriorityCareBenchmark relaxed [heapsPerLevel] <BR/>
+ * java src.PriorityCareBenchmark journal [directory] <BR/>
+ * java src.PriorityCareBenchmark snapshot [size] [directory] <BR/>
+ * java src.PriorityCareBenchmark offheap [size] <BR/>
+ * java src.PriorityCareBenchmark wards [queues] [capacity] <BR/>
+ * <BR/>
+ * Large queue sizes need a large heap, for instance -Xmx4g for 10^7 PatientRecords.
+ */
+public class PriorityCareBenchmark {
+
+    private static final int[] ARITIES = {2, 4, 8}; // heap arities compared by the arity suite
+    private static final int[] ADD_PERCENTS = {30, 50, 70}; // share of addPatient() calls
+    private static final int OPERATIONS = 2_000_000; // measured operations per configuration
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64}; // relaxed suite threads
+    private static final int RELAXED_QUEUE_SIZE = 100_000; // records waiting in the relaxed suite
+    private static final int JOURNAL_EVENTS = 400_000; // events appended per journal configuration
+    private static final int JOURNAL_BATCH_SIZE = 256; // events per fsync with the BATCHED policy
+    private static final long JOURNAL_INTERVAL_MILLIS = 10; // delay between fsyncs with INTERVAL
+    private static final int SNAPSHOT_ROUNDS = 3; // measured rounds of the snapshot suite
+    private static final int OFF_HEAP_CHURN = 2_000_000; // dequeue/admit pairs of the offheap suite
+    private static final int WARD_ROUNDS = 20; // clear/admit rounds over all the wards
+
+    /**
+     * Compares the cost of the operations of src.PriorityCareAdmissions for each supported arity.
+     * For each queue size, the queue is first filled with size PatientRecords, then a random mix of
+     * addPatient() and removeBestRecord() calls is timed. The queue size is kept between 0 and twice
+     * the initial size, so the depth of the heap stays comparable across mixes.
+     *
+     * @param sizes initial queue sizes to benchmark
+     */
+    public static void benchmarkArity(int[] sizes) {
+        System.out.println("arity       size  add%    ns/op");
+        for (int size : sizes) {
+            PatientRecord[] pool = createPatients(2 * size, new Random(size));
+            for (int addPercent : ADD_PERCENTS) {
+                for (int arity : ARITIES) {
+                    runArityWorkload(pool, size, arity, addPercent); // warm-up
+                    double nanosPerOperation = runArityWorkload(pool, size, arity, addPercent);
+                    System.out.printf("%5d %10d %5d %8.1f%n", arity, size, addPercent, nanosPerOperation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one timed add/remove workload against a queue of the given arity
+     *
+     * @param pool       PatientRecords to admit, removed records are admitted again later
+     * @param size       number of PatientRecords admitted before timing starts
+     * @param arity      arity of the queue under test
+     * @param addPercent share of addPatient() calls in the timed operations
+     * @return the average cost of one operation in nanoseconds
+     */
+    private static double runArityWorkload(PatientRecord[] pool, int size, int arity, int addPercent) {
+        PriorityCareAdmissions queue = new PriorityCareAdmissions(pool.length, arity);
+        PatientRecord[] waiting = new PatientRecord[pool.length]; // stack of records not queued
+        int available = 0;
+        for (int i = 0; i < pool.length; i++) {
+            if (i < size) {
+                queue.addPatient(pool[i]);
+            } else {
+                waiting[available++] = pool[i];
+            }
+        }
+
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            boolean add = random.nextInt(100) < addPercent;
+            if ((add && available > 0) || queue.isEmpty()) {
+                queue.addPatient(waiting[--available]);
+            } else {
+                waiting[available++] = queue.removeBestRecord();
+            }
+        }
+        return (double) (System.nanoTime() - start) / OPERATIONS;
+    }
+
+    /**
+     * Measures src.RelaxedPriorityCareAdmissions. First, its rank error is measured on a
+     * single-threaded random workload, for 1 to heapsPerLevel internal heaps per triage level: the
+     * rank error of a dequeued src.PatientRecord is the number of waiting PatientRecords of its
+     * triage level which arrived before it. Then the throughput of a 50% add / 50% remove workload is
+     * measured from 1 to 64 threads, for the relaxed queue and for the strict
+     * src.ConcurrentPriorityCareAdmissions queue.
+     *
+     * @param heapsPerLevel number of internal heaps per triage level of the relaxed queue
+     */
+    public static void benchmarkRelaxed(int heapsPerLevel) {
+        PatientRecord[] pool = createPatients(2 * RELAXED_QUEUE_SIZE, new Random(1));
+
+        System.out.println("heaps/level  mean-rank-error  max-rank-error");
+        for (int k = 1; k <= heapsPerLevel; k *= 2) {
+            long[] error = measureRankError(pool, k);
+            System.out.printf("%11d %16.2f %15d%n", k, (double) error[0] / error[1], error[2]);
+        }
+
+        System.out.println("threads  relaxed-ops/s  strict-ops/s");
+        for (int threads : THREAD_COUNTS) {
+            RelaxedPriorityCareAdmissions relaxed =
+                    new RelaxedPriorityCareAdmissions(pool.length, heapsPerLevel);
+            ConcurrentPriorityCareAdmissions strict = new ConcurrentPriorityCareAdmissions(pool.length);
+            for (int i = 0; i < RELAXED_QUEUE_SIZE; i++) {
+                relaxed.addPatient(pool[i]);
+                strict.addPatient(pool[i]);
+            }
+            double relaxedThroughput = measureThroughput(pool, threads,
+                    relaxed::addPatient, relaxed::removeBestRecord);
+            double strictThroughput = measureThroughput(pool, threads,
+                    strict::addPatient, strict::removeBestRecord);
+            System.out.printf("%7d %14.0f %13.0f%n", threads, relaxedThroughput, strictThroughput);
+        }
+    }
+
+    /**
+     * Runs a single-threaded random workload on a src.RelaxedPriorityCareAdmissions queue and
+     * measures the rank error of each dequeued src.PatientRecord. One Fenwick tree per triage level,
+     * indexed by position in the pool, counts the waiting PatientRecords which arrived before it.
+     *
+     * @param pool          PatientRecords to admit, created in their order of arrival
+     * @param heapsPerLevel number of internal heaps per triage level
+     * @return the total rank error, the number of dequeued PatientRecords, and the maximum rank error
+     */
+    private static long[] measureRankError(PatientRecord[] pool, int heapsPerLevel) {
+        RelaxedPriorityCareAdmissions queue = new RelaxedPriorityCareAdmissions(pool.length,
+                heapsPerLevel);
+        int levels = TriageLevel.values().length;
+        int[][] fenwick = new int[levels][pool.length + 1];
+        int firstArrival = pool[0].getArrivalOrder();
+        long[] error = new long[3];
+        Random random = new Random(7);
+        int next = 0;
+
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            boolean add = next < pool.length && (queue.size() < RELAXED_QUEUE_SIZE
+                    ? random.nextInt(100) < 60 : random.nextInt(100) < 40);
+            if (add || queue.isEmpty()) {
+                if (next == pool.length) {
+                    break;
+                }
+                PatientRecord p = pool[next++];
+                queue.addPatient(p);
+                fenwickAdd(fenwick[p.getTriage().ordinal()], p.getArrivalOrder() - firstArrival, 1);
+            } else {
+                PatientRecord p = queue.removeBestRecord();
+                int[] tree = fenwick[p.getTriage().ordinal()];
+                int position = p.getArrivalOrder() - firstArrival;
+                long rank = fenwickPrefix(tree, position); // waiting records which arrived before p
+                fenwickAdd(tree, position, -1);
+                error[0] += rank;
+                error[1]++;
+                error[2] = Math.max(error[2], rank);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Adds a value at the given position of a Fenwick tree
+     *
+     * @param tree     Fenwick tree, whose index 0 is unused
+     * @param position zero-based position to update
+     * @param value    value to add
+     */
+    private static void fenwickAdd(int[] tree, int position, int value) {
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += value;
+        }
+    }
+
+    /**
+     * Returns the sum of the values stored at the positions before the given one in a Fenwick tree
+     *
+     * @param tree     Fenwick tree, whose index 0 is unused
+     * @param position zero-based position, excluded from the sum
+     * @return the sum of the values at positions 0 to position-1
+     */
+    private static long fenwickPrefix(int[] tree, int position) {
+        long sum = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Measures the cost of journaling the intake of an admissions desk with src.AdmissionsJournal,
+     * for each sync policy, with 1 and 4 intake threads. Each thread admits its own PatientRecords
+     * into its own queue and journals each admission and each dequeue. The throughput is compared
+     * with the same workload without journal. Forcing every event to disk is much slower than the
+     * other policies, so the PER_OPERATION policy runs a twentieth of the events.
+     *
+     * @param directory directory of the journal files, on the disk to measure
+     * @throws IOException if a journal file cannot be created or written
+     */
+    public static void benchmarkJournal(Path directory) throws IOException {
+        System.out.println("policy         threads      events/s");
+        for (int threads : new int[] {1, 4}) {
+            PatientRecord[] pool = createPatients(JOURNAL_EVENTS / 2, new Random(threads));
+            runJournalWorkload(pool, threads, null); // warm-up
+            System.out.printf("%-14s %7d %13.0f%n", "none", threads,
+                    runJournalWorkload(pool, threads, null));
+            for (AdmissionsJournal.SyncPolicy policy : AdmissionsJournal.SyncPolicy.values()) {
+                Path file = Files.createTempFile(directory, "benchmark", ".journal");
+                Files.delete(file);
+                PatientRecord[] records = pool;
+                if (policy == AdmissionsJournal.SyncPolicy.PER_OPERATION) {
+                    records = Arrays.copyOf(pool, pool.length / 20);
+                }
+                try (AdmissionsJournal journal = new AdmissionsJournal(file, policy,
+                        JOURNAL_BATCH_SIZE, JOURNAL_INTERVAL_MILLIS)) {
+                    System.out.printf("%-14s %7d %13.0f%n", policy, threads,
+                            runJournalWorkload(records, threads, journal));
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one journaled intake workload: the pool is split between the threads, and each thread
+     * admits its PatientRecords into its own queue, dequeuing one every other admission
+     *
+     * @param pool    PatientRecords to admit
+     * @param threads number of intake threads
+     * @param journal journal recording each admission and each dequeue, or null
+     * @return the number of events (admissions and dequeues) per second
+     */
+    private static double runJournalWorkload(PatientRecord[] pool, int threads,
+                                             AdmissionsJournal journal) {
+        int perThread = pool.length / threads;
+        AtomicLong events = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = t * perThread;
+            workers[t] = new Thread(() -> {
+                PriorityCareAdmissions queue = new PriorityCareAdmissions(perThread);
+                long done = 0;
+                for (int i = first; i < first + perThread; i++) {
+                    queue.addPatient(pool[i]);
+                    if (journal != null) {
+                        journal.recordAdd(pool[i]);
+                    }
+                    done++;
+                    if ((i & 1) == 1) {
+                        PatientRecord p = queue.removeBestRecord();
+                        if (journal != null) {
+                            journal.recordRemoveBest(p);
+                        }
+                        done++;
+                    }
+                }
+                events.addAndGet(done);
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (journal != null) {
+                journal.sync();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return events.get() * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Measures the time taken to capture a src.AdmissionsSnapshot of a queue of the given size, to
+     * write it to a file and to restore it into an empty queue. For comparison, the same queue is
+     * also rebuilt by replaying a src.AdmissionsJournal of its admissions. The first round warms up.
+     *
+     * @param size      number of PatientRecords waiting in the queue
+     * @param directory directory of the snapshot and journal files, on the disk to measure
+     * @throws IOException if a file cannot be created or written
+     */
+    public static void benchmarkSnapshot(int size, Path directory) throws IOException {
+        PatientRecord[] pool = createPatients(size, new Random(size));
+        PriorityCareAdmissions queue = new PriorityCareAdmissions(size);
+        queue.addAll(pool);
+        Path snapshotFile = Files.createTempFile(directory, "benchmark", ".snapshot");
+        Path journalFile = Files.createTempFile(directory, "benchmark", ".journal");
+        Files.delete(journalFile);
+        try {
+            try (AdmissionsJournal journal = new AdmissionsJournal(journalFile,
+                    AdmissionsJournal.SyncPolicy.BATCHED, JOURNAL_BATCH_SIZE,
+                    JOURNAL_INTERVAL_MILLIS)) {
+                for (PatientRecord p : pool) {
+                    journal.recordAdd(p);
+                }
+            }
+            System.out.println("round   capture ms   write ms   restore ms   replay ms   bytes");
+            for (int round = 0; round <= SNAPSHOT_ROUNDS; round++) {
+                long start = System.nanoTime();
+                AdmissionsSnapshot snapshot = AdmissionsSnapshot.capture(queue,
+                        new ArrayList<PatientRecord>());
+                long captured = System.nanoTime();
+                snapshot.writeTo(snapshotFile);
+                long written = System.nanoTime();
+                PriorityCareAdmissions restored = new PriorityCareAdmissions(size);
+                AdmissionsSnapshot.restore(snapshotFile, restored, new ArrayList<PatientRecord>());
+                long restoredTime = System.nanoTime();
+                PriorityCareAdmissions replayed = new PriorityCareAdmissions(size);
+                AdmissionsJournal.replay(journalFile, replayed, new ArrayList<PatientRecord>());
+                long replayedTime = System.nanoTime();
+                if (restored.size() != size || replayed.size() != size) {
+                    throw new IllegalStateException("Restored queue differs from the original");
+                }
+                System.out.printf("%5s %12.1f %10.1f %12.1f %11.1f %7d%n",
+                        round == 0 ? "warm" : String.valueOf(round), (captured - start) / 1e6,
+                        (written - captured) / 1e6, (restoredTime - written) / 1e6,
+                        (replayedTime - restoredTime) / 1e6, Files.size(snapshotFile));
+            }
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    /**
+     * Compares a src.PriorityCareAdmissions queue of PatientRecord objects with a
+     * src.OffHeapPriorityCareAdmissions queue holding the same number of patients. For each queue,
+     * reports the heap retained by the full queue, in total and per patient, its off-heap memory,
+     * the pause of a full garbage collection with the queue alive, and the cost and garbage
+     * collection time of a churn of dequeues and admissions.
+     *
+     * @param size number of patients waiting in each queue
+     */
+    public static void benchmarkOffHeap(int size) {
+        System.out.println("storage    heap MB  heap B/patient  off-heap MB  full GC ms  churn ns/op"
+                + "  churn GC ms");
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            for (boolean offHeap : new boolean[] {false, true}) {
+                long baseline = usedHeapAfterGc();
+                Random random = new Random(size);
+                TriageLevel[] levels = TriageLevel.values();
+                PriorityCareAdmissions queue = offHeap ? null : new PriorityCareAdmissions(size);
+                OffHeapPriorityCareAdmissions offHeapQueue =
+                        offHeap ? new OffHeapPriorityCareAdmissions(size) : null;
+                for (int i = 0; i < size; i++) {
+                    TriageLevel level = levels[random.nextInt(levels.length)];
+                    if (offHeap) {
+                        offHeapQueue.admit('F', random.nextInt(100), level);
+                    } else {
+                        queue.addPatient(new PatientRecord('F', random.nextInt(100), level));
+                    }
+                }
+                long retained = usedHeapAfterGc() - baseline;
+                long gcBefore = gcMillis();
+                System.gc();
+                long fullGc = gcMillis() - gcBefore;
+
+                gcBefore = gcMillis();
+                long start = System.nanoTime();
+                for (int i = 0; i < OFF_HEAP_CHURN; i++) {
+                    TriageLevel level = levels[random.nextInt(levels.length)];
+                    if (offHeap) {
+                        offHeapQueue.removeBestRecord();
+                        offHeapQueue.admit('M', random.nextInt(100), level);
+                    } else {
+                        queue.removeBestRecord();
+                        queue.addPatient(new PatientRecord('M', random.nextInt(100), level));
+                    }
+                }
+                double nanosPerOperation = (System.nanoTime() - start) / (2.0 * OFF_HEAP_CHURN);
+                long churnGc = gcMillis() - gcBefore;
+                if (round > 0) {
+                    System.out.printf("%-9s %8.1f %15.1f %12.1f %11d %12.1f %12d%n",
+                            offHeap ? "off-heap" : "heap", retained / 1e6,
+                            (double) retained / size, (offHeap ? offHeapQueue.offHeapBytes() : 0) / 1e6, fullGc,
+                            nanosPerOperation, churnGc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures the cost of running one small src.PriorityCareAdmissions queue per ward: the given
+     * number of queues of the given capacity are created, each holding 0 to 3 patients, then every
+     * queue is cleared and given one new patient, over several rounds. Reports the heap retained per
+     * queue, the time to create all the queues, and the time of one clear and admission per queue.
+     *
+     * @param queues   number of ward queues
+     * @param capacity capacity of each ward queue
+     */
+    public static void benchmarkWards(int queues, int capacity) {
+        long baseline = usedHeapAfterGc();
+        Random random = new Random(queues);
+        PriorityCareAdmissions[] wards = new PriorityCareAdmissions[queues];
+        long start = System.nanoTime();
+        for (int i = 0; i < queues; i++) {
+            wards[i] = new PriorityCareAdmissions(capacity);
+            for (int patients = random.nextInt(4); patients > 0; patients--) {
+                wards[i].addPatient(new PatientRecord('F', random.nextInt(100), TriageLevel.GREEN));
+            }
+        }
+        double createMillis = (System.nanoTime() - start) / 1e6;
+        long retained = usedHeapAfterGc() - baseline;
+
+        start = System.nanoTime();
+        for (int round = 0; round < WARD_ROUNDS; round++) {
+            for (PriorityCareAdmissions ward : wards) {
+                ward.clear();
+                ward.addPatient(new PatientRecord('M', round, TriageLevel.YELLOW));
+            }
+        }
+        double nanosPerWard = (System.nanoTime() - start) / ((double) WARD_ROUNDS * queues);
+        System.out.println("   queues  capacity   heap MB  bytes/queue  create ms  clear+add ns");
+        System.out.printf("%9d %9d %9.1f %12.0f %10.1f %13.1f%n", queues, capacity, retained / 1e6,
+                (double) retained / queues, createMillis, nanosPerWard);
+    }
+
+    /**
+     * Runs the garbage collector and returns the heap in use after it
+     *
+     * @return the number of bytes of heap in use
+     */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the total time spent in garbage collections since the JVM started
+     *
+     * @return the accumulated collection time of all the garbage collectors, in milliseconds
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Admission operation of a queue under test
+     */
+    private interface Admit {
+        void addPatient(PatientRecord p);
+    }
+
+    /**
+     * Dequeue operation of a queue under test
+     */
+    private interface Dequeue {
+        PatientRecord removeBestRecord();
+    }
+
+    /**
+     * Runs a workload where each thread alternates between removing a src.PatientRecord and admitting
+     * one from its own share of the pool, and measures the throughput of all the threads.
+     *
+     * @param pool    PatientRecords, the first RELAXED_QUEUE_SIZE of which are already queued
+     * @param threads number of threads
+     * @param admit   admission operation of the queue under test
+     * @param dequeue dequeue operation of the queue under test
+     * @return the total number of operations per second
+     */
+    private static double measureThroughput(PatientRecord[] pool, int threads, Admit admit,
+                                            Dequeue dequeue) {
+        int perThread = (pool.length - RELAXED_QUEUE_SIZE) / threads;
+        int operationsPerThread = OPERATIONS / threads;
+        AtomicLong operations = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = RELAXED_QUEUE_SIZE + t * perThread;
+            workers[t] = new Thread(() -> {
+                PatientRecord[] stash = new PatientRecord[perThread + operationsPerThread];
+                int available = 0;
+                for (int i = first; i < first + perThread; i++) {
+                    stash[available++] = pool[i];
+                }
+                int done = 0;
+                for (int i = 0; i < operationsPerThread; i++) {
+                    if ((i & 1) == 0 || available == 0) {
+                        try {
+                            stash[available++] = dequeue.removeBestRecord();
+                        } catch (NoSuchElementException e) {
+                            continue;
+                        }
+                    } else {
+                        admit.addPatient(stash[--available]);
+                    }
+                    done++;
+                }
+                operations.addAndGet(done);
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return operations.get() * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Creates the given number of PatientRecords having random genders, ages and triage levels
+     *
+     * @param count  number of PatientRecords to create
+     * @param random source of randomness
+     * @return an array of new PatientRecords, in their order of arrival
+     */
+    private static PatientRecord[] createPatients(int count, Random random) {
+        TriageLevel[] levels = TriageLevel.values();
+        char[] genders = {'F', 'M', 'X'};
+        PatientRecord[] patients = new PatientRecord[count];
+        for (int i = 0; i < count; i++) {
+            patients[i] = new PatientRecord(genders[random.nextInt(genders.length)],
+                    random.nextInt(100), levels[random.nextInt(levels.length)]);
+        }
+        return patients;
+    }
+
+    /**
+     * Parses the queue sizes given on the command line
+     *
+     * @param args     command line arguments, the first one being the name of the suite
+     * @param defaults sizes to use if none are given
+     * @return the queue sizes to benchmark
+     */
+    private static int[] parseSizes(String[] args, int[] defaults) {
+        if (args.length < 2) {
+            return defaults;
+        }
+        int[] sizes = new int[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            sizes[i - 1] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    /**
+     * Main method to run the benchmark suite named by the first argument.
+     *
+     * @param args name of the suite followed by its optional parameters
+     * @throws IOException if a file of the journal or snapshot suites cannot be created or written
+     */
+    public static void main(String[] args) throws IOException {
+        String suite = args.length > 0 ? args[0] : "arity";
+        switch (suite) {
+            case "arity":
+                benchmarkArity(parseSizes(args, new int[] {1_000, 10_000, 100_000, 1_000_000,
+                        10_000_000}));
+                break;
+            case "relaxed":
+                benchmarkRelaxed(args.length > 1 ? Integer.parseInt(args[1]) : 8);
+                break;
+            case "journal":
+                benchmarkJournal(Paths.get(args.length > 1 ? args[1] : "."));
+                break;
+            case "offheap":
+                benchmarkOffHeap(args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000);
+                break;
+            case "wards":
+                benchmarkWards(args.length > 1 ? Integer.parseInt(args[1]) : 20_000,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 1_000);
+                break;
+            case "snapshot":
+                benchmarkSnapshot(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000,
+                        Paths.get(args.length > 2 ? args[2] : "."));
+                break;
+            default:
+                System.out.println("Unknown benchmark suite: " + suite);
+        }
+    }
+}
@@ -1,6 +1,23 @@
 package src;
 
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * This is a Utility class which contains tester methods to ensure the correctness of the
@@ -611,6 +628,2421 @@ public class PriorityCareTester {
     }
 
 
+    /**
+     * Tests whether src.TriageBucketedAdmissions dequeues PatientRecords in exactly the same order as
+     * src.PriorityCareAdmissions. Both queues are fed the same large random workload of interleaved
+     * addPatient() and removeBestRecord() calls, and must return the same src.PatientRecord
+     * instances, have the same size, and peek the same record after every operation. Surges admitted
+     * in reverse order of arrival are then cleared or drained, and dequeued in the same order.
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testBucketedAdmissionsMatchesHeapOrder() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(2023);
+        TriageLevel[] levels = TriageLevel.values();
+        char[] genders = {'F', 'M', 'X'};
+        int capacity = 50000;
+
+        PriorityCareAdmissions heap = new PriorityCareAdmissions(capacity);
+        TriageBucketedAdmissions buckets = new TriageBucketedAdmissions(capacity);
+
+        try {
+            for (int operation = 0; operation < 300000; operation++) {
+                boolean add = heap.size() < capacity && (heap.isEmpty() || random.nextInt(10) < 6);
+                if (add) {
+                    PatientRecord p = new PatientRecord(genders[random.nextInt(genders.length)],
+                            random.nextInt(100), levels[random.nextInt(levels.length)]);
+                    heap.addPatient(p);
+                    buckets.addPatient(p);
+                } else if (heap.removeBestRecord() != buckets.removeBestRecord()) {
+                    return false;
+                }
+                if (heap.size() != buckets.size()
+                        || (!heap.isEmpty() && heap.peek() != buckets.peek())) {
+                    return false;
+                }
+            }
+            if (!heap.toString().equals(buckets.toString())) {
+                return false;
+            }
+            while (!heap.isEmpty()) {
+                if (heap.removeBestRecord() != buckets.removeBestRecord()) {
+                    return false;
+                }
+            }
+            if (!buckets.isEmpty()) {
+                return false;
+            }
+
+            // surges admitted out of order, cleared or drained, leave a queue which still works
+            for (int surge = 0; surge < 4; surge++) {
+                PatientRecord[] arrivals = new PatientRecord[2000];
+                for (int i = 0; i < arrivals.length; i++) {
+                    arrivals[i] = new PatientRecord('F', 30, levels[random.nextInt(levels.length)]);
+                }
+                for (int i = arrivals.length - 1; i >= 0; i--) {
+                    heap.addPatient(arrivals[i]);
+                    buckets.addPatient(arrivals[i]);
+                }
+                if (surge % 2 == 0) {
+                    heap.clear();
+                    buckets.clear();
+                }
+                while (!heap.isEmpty()) {
+                    if (heap.removeBestRecord() != buckets.removeBestRecord()) {
+                        return false;
+                    }
+                }
+                if (!buckets.isEmpty() || !buckets.toString().isEmpty()) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether comparing the priority keys of two PatientRecords gives the same result as
+     * src.PatientRecord.compareTo(), including PatientRecords having the same order of arrival, and
+     * whether the key-based src.PriorityCareAdmissions queue still hands back the very
+     * src.PatientRecord instances which were added to it.
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testPriorityKeyMatchesCompareTo() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(7);
+        TriageLevel[] levels = TriageLevel.values();
+        PatientRecord[] records = new PatientRecord[60];
+        for (int i = 0; i < records.length; i++) {
+            if (i % 20 == 0) {
+                PatientRecord.resetCounter(); // creates records with the same order of arrival
+            }
+            records[i] = new PatientRecord('F', i, levels[random.nextInt(levels.length)]);
+        }
+
+        try {
+            // 1. Keys order PatientRecords exactly like compareTo()
+            for (PatientRecord a : records) {
+                for (PatientRecord b : records) {
+                    int expected = Integer.signum(a.compareTo(b));
+                    int actual = Long.signum(Long.compare(PriorityCareAdmissions.priorityKey(a),
+                            PriorityCareAdmissions.priorityKey(b)));
+                    if (actual != expected) {
+                        return false;
+                    }
+                }
+            }
+
+            // 2. The queue returns the original PatientRecords in compareTo() order
+            PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(records.length);
+            for (PatientRecord p : records) {
+                priorityCare.addPatient(p);
+            }
+            PatientRecord previous = null;
+            while (!priorityCare.isEmpty()) {
+                PatientRecord current = priorityCare.peek();
+                if (priorityCare.removeBestRecord() != current) {
+                    return false;
+                }
+                boolean found = false;
+                for (PatientRecord p : records) {
+                    found |= p == current;
+                }
+                if (!found || (previous != null && previous.compareTo(current) > 0)) {
+                    return false;
+                }
+                previous = current;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the d-ary heap option of src.PriorityCareAdmissions. Creating a queue with an arity other
+     * than 2, 4 or 8 should throw an IllegalArgumentException, and 4-ary and 8-ary queues must
+     * dequeue PatientRecords in the same order as the binary queue on a random workload.
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testArity() {
+        PatientRecord.resetCounter();
+
+        {
+            // 1. Calling the constructor with an invalid arity
+            try {
+                new PriorityCareAdmissions(10, 3);
+                return false;
+            } catch (IllegalArgumentException e) {
+
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        {
+            // 2. Wider heaps dequeue in the same order as the binary heap
+            Random random = new Random(11);
+            TriageLevel[] levels = TriageLevel.values();
+            PriorityCareAdmissions binary = new PriorityCareAdmissions(5000);
+            PriorityCareAdmissions quaternary = new PriorityCareAdmissions(5000, 4);
+            PriorityCareAdmissions octonary = new PriorityCareAdmissions(5000, 8);
+
+            try {
+                if (binary.arity() != 2 || quaternary.arity() != 4 || octonary.arity() != 8) {
+                    return false;
+                }
+                for (int operation = 0; operation < 20000; operation++) {
+                    if (binary.isEmpty() || (binary.size() < 5000 && random.nextInt(10) < 6)) {
+                        PatientRecord p = new PatientRecord('M', random.nextInt(100),
+                                levels[random.nextInt(levels.length)]);
+                        binary.addPatient(p);
+                        quaternary.addPatient(p);
+                        octonary.addPatient(p);
+                    } else {
+                        PatientRecord expected = binary.removeBestRecord();
+                        if (quaternary.removeBestRecord() != expected
+                                || octonary.removeBestRecord() != expected) {
+                            return false;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests the percolateUp() and percolateDown() methods of src.PriorityCareAdmissions. They should
+     * throw an IndexOutOfBoundsException when given an index out of bounds, leave a valid heap
+     * untouched, and keep working on a queue holding hundreds of thousands of PatientRecords.
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testPercolate() {
+        PatientRecord.resetCounter();
+
+        {
+            // 1. Indexes out of bounds
+            PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(3);
+            priorityCare.addPatient(new PatientRecord('F', 30, TriageLevel.GREEN));
+            try {
+                priorityCare.percolateUp(1);
+                return false;
+            } catch (IndexOutOfBoundsException e) {
+
+            } catch (Exception e) {
+                return false;
+            }
+            try {
+                priorityCare.percolateDown(-1);
+                return false;
+            } catch (IndexOutOfBoundsException e) {
+
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        {
+            // 2. Large queue, admitted from the lowest to the highest priority
+            int count = 300000;
+            PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    TriageLevel triage = i < count / 3 ? TriageLevel.GREEN
+                            : i < 2 * count / 3 ? TriageLevel.YELLOW : TriageLevel.RED;
+                    priorityCare.addPatient(new PatientRecord('X', i % 100, triage));
+                }
+                PatientRecord[] before = priorityCare.arrayHeapCopy();
+                for (int i = 0; i < count; i += 997) {
+                    priorityCare.percolateUp(i);
+                    priorityCare.percolateDown(i);
+                }
+                PatientRecord[] after = priorityCare.arrayHeapCopy();
+                for (int i = 0; i < count; i++) {
+                    if (before[i] != after[i]) {
+                        return false;
+                    }
+                }
+                PatientRecord previous = priorityCare.removeBestRecord();
+                while (!priorityCare.isEmpty()) {
+                    PatientRecord current = priorityCare.removeBestRecord();
+                    if (previous.compareTo(current) > 0) {
+                        return false;
+                    }
+                    previous = current;
+                }
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests the growable mode of src.PriorityCareAdmissions. Should implement at least the following
+     * scenarios:
+     * - invalid growth factors and maximum capacities throw an IllegalArgumentException
+     * - a growable queue grows past its initial capacity, up to its maximum capacity, and then
+     * throws an IllegalStateException
+     * - the capacity shrinks back once the queue has drained, and trimToSize() and clear() release
+     * the memory of a surge
+     * - PatientRecords are still dequeued in priority order across resizes
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testGrowable() {
+        PatientRecord.resetCounter();
+
+        {
+            // 1. Invalid growth settings
+            try {
+                new PriorityCareAdmissions(4, 2, 1.0, 100);
+                return false;
+            } catch (IllegalArgumentException e) {
+
+            } catch (Exception e) {
+                return false;
+            }
+            try {
+                new PriorityCareAdmissions(4, 2, 1.5, 3);
+                return false;
+            } catch (IllegalArgumentException e) {
+
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        try {
+            // 2. Growing up to the maximum capacity
+            PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(4, 4, 1.5, 1000);
+            TriageLevel[] levels = TriageLevel.values();
+            for (int i = 0; i < 1000; i++) {
+                priorityCare.addPatient(new PatientRecord('F', i % 100, levels[i % levels.length]));
+            }
+            if (priorityCare.size() != 1000 || priorityCare.capacity() != 1000
+                    || !priorityCare.isGrowable()) {
+                return false;
+            }
+            try {
+                priorityCare.addPatient(new PatientRecord('M', 40, TriageLevel.RED));
+                return false;
+            } catch (IllegalStateException e) {
+
+            }
+
+            // 3. Shrinking on drain, in priority order
+            PatientRecord previous = priorityCare.removeBestRecord();
+            while (priorityCare.size() > 10) {
+                PatientRecord current = priorityCare.removeBestRecord();
+                if (previous.compareTo(current) > 0) {
+                    return false;
+                }
+                previous = current;
+            }
+            if (priorityCare.capacity() >= 1000 || priorityCare.capacity() < 10) {
+                return false;
+            }
+
+            // 4. trimToSize() and clear()
+            priorityCare.trimToSize();
+            if (priorityCare.capacity() != 10 || priorityCare.size() != 10) {
+                return false;
+            }
+            priorityCare.clear();
+            if (priorityCare.capacity() != 4 || !priorityCare.isEmpty()) {
+                return false;
+            }
+
+            // 5. trimToSize() does not change the capacity of a fixed queue
+            PriorityCareAdmissions fixed = new PriorityCareAdmissions(8);
+            fixed.trimToSize();
+            if (fixed.capacity() != 8 || fixed.isGrowable()) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the bulk admission operations of src.PriorityCareAdmissions: the constructor building a
+     * queue from an array, and addAll(). Should implement at least the following scenarios:
+     * - a queue built from an array, or filled by a large batch, dequeues in priority order
+     * - a small batch added to a large queue is merged in priority order
+     * - a batch holding a null src.PatientRecord, or too large for the queue, is rejected as a whole
+     * - a growable queue grows to fit a batch
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testAddAll() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(5);
+        TriageLevel[] levels = TriageLevel.values();
+        PatientRecord[] records = new PatientRecord[2000];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new PatientRecord('X', random.nextInt(100),
+                    levels[random.nextInt(levels.length)]);
+        }
+
+        try {
+            // 1. Building a queue from an array
+            PriorityCareAdmissions built = new PriorityCareAdmissions(records);
+            PriorityCareAdmissions oneByOne = new PriorityCareAdmissions(records.length);
+            for (PatientRecord p : records) {
+                oneByOne.addPatient(p);
+            }
+            if (built.size() != records.length || built.capacity() != records.length) {
+                return false;
+            }
+            while (!oneByOne.isEmpty()) {
+                if (built.removeBestRecord() != oneByOne.removeBestRecord()) {
+                    return false;
+                }
+            }
+
+            // 2. Large batch into a queue built one src.PatientRecord at a time
+            PriorityCareAdmissions expected = new PriorityCareAdmissions(records.length + 10);
+            PriorityCareAdmissions batched = new PriorityCareAdmissions(records.length + 10);
+            for (PatientRecord p : records) {
+                expected.addPatient(p);
+            }
+            ArrayList<PatientRecord> batch = new ArrayList<PatientRecord>();
+            for (PatientRecord p : records) {
+                batch.add(p);
+            }
+            batched.addAll(batch);
+
+            // 3. Small batch into a large queue
+            PatientRecord[] small = new PatientRecord[10];
+            for (int i = 0; i < small.length; i++) {
+                small[i] = new PatientRecord('F', i, levels[i % levels.length]);
+                expected.addPatient(small[i]);
+            }
+            batched.addAll(small);
+
+            while (!expected.isEmpty()) {
+                if (batched.removeBestRecord() != expected.removeBestRecord()) {
+                    return false;
+                }
+            }
+            if (!batched.isEmpty() || !built.isEmpty()) {
+                return false;
+            }
+
+            // 4. Rejected batches leave the queue unchanged
+            PriorityCareAdmissions small3 = new PriorityCareAdmissions(3);
+            small3.addPatient(records[0]);
+            try {
+                small3.addAll(new PatientRecord[] {records[1], null});
+                return false;
+            } catch (NullPointerException e) {
+
+            }
+            try {
+                small3.addAll(new PatientRecord[] {records[1], records[2], records[3]});
+                return false;
+            } catch (IllegalStateException e) {
+
+            }
+            if (small3.size() != 1 || small3.peek() != records[0]) {
+                return false;
+            }
+            try {
+                new PriorityCareAdmissions(new PatientRecord[0]);
+                return false;
+            } catch (IllegalArgumentException e) {
+
+            }
+
+            // 5. A growable queue grows to fit the batch
+            PriorityCareAdmissions growable = new PriorityCareAdmissions(2, 2, 2.0, 5000);
+            growable.addAll(records);
+            if (growable.size() != records.length || growable.capacity() < records.length) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the ordered iteration of src.PriorityCareAdmissions. Should implement at least the
+     * following scenarios:
+     * - iterating over a queue, for each arity, lists its PatientRecords in the order
+     * removeBestRecord() returns them, and leaves the queue unchanged
+     * - writeTo() and stream() list the same PatientRecords in the same order
+     * - iterating over an empty queue lists nothing
+     * - modifying the queue during an iteration throws a ConcurrentModificationException
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testOrderedIteration() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(3);
+        TriageLevel[] levels = TriageLevel.values();
+
+        try {
+            for (int arity = 2; arity <= 8; arity *= 2) {
+                // 1. Iteration order and unchanged heap
+                PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(3000, arity);
+                for (int i = 0; i < 3000; i++) {
+                    priorityCare.addPatient(new PatientRecord('M', random.nextInt(100),
+                            levels[random.nextInt(levels.length)]));
+                }
+                PatientRecord[] heapBefore = priorityCare.arrayHeapCopy();
+                PatientRecord[] iterated = new PatientRecord[priorityCare.size()];
+                int count = 0;
+                for (PatientRecord p : priorityCare) {
+                    iterated[count++] = p;
+                }
+                PatientRecord[] heapAfter = priorityCare.arrayHeapCopy();
+                for (int i = 0; i < heapBefore.length; i++) {
+                    if (heapBefore[i] != heapAfter[i]) {
+                        return false;
+                    }
+                }
+
+                // 2. writeTo() and stream()
+                StringBuilder written = new StringBuilder();
+                priorityCare.writeTo(written);
+                if (!written.toString().equals(priorityCare.toString())
+                        || priorityCare.stream().count() != count
+                        || priorityCare.stream().findFirst().get() != priorityCare.peek()) {
+                    return false;
+                }
+
+                PriorityCareAdmissions copy = priorityCare.deepCopy();
+                for (int i = 0; i < count; i++) {
+                    if (copy.removeBestRecord() != iterated[i]) {
+                        return false;
+                    }
+                }
+                if (count != 3000 || !copy.isEmpty()) {
+                    return false;
+                }
+
+                // 3. Concurrent modification
+                Iterator<PatientRecord> iterator = priorityCare.iterator();
+                iterator.next();
+                priorityCare.removeBestRecord();
+                try {
+                    iterator.next();
+                    return false;
+                } catch (ConcurrentModificationException e) {
+
+                }
+            }
+
+            // 4. Empty queue
+            PriorityCareAdmissions empty = new PriorityCareAdmissions(2);
+            if (empty.iterator().hasNext() || empty.stream().count() != 0) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the indexed operations of src.PriorityCareAdmissions: updateTriage() and remove().
+     * Should implement at least the following scenarios:
+     * - re-triaging a waiting src.PatientRecord to a higher or a lower priority moves it to its new
+     * position in the queue
+     * - removing a waiting src.PatientRecord by CASE_NUMBER, wherever it is in the heap, keeps the
+     * remaining PatientRecords in priority order
+     * - both operations throw a NoSuchElementException for a CASE_NUMBER which is not waiting
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testUpdateTriageAndRemove() {
+        PatientRecord.resetCounter();
+
+        PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(7);
+        PatientRecord firstPatient = new PatientRecord('X', 54, TriageLevel.GREEN);
+        PatientRecord secondPatient = new PatientRecord('M', 23, TriageLevel.GREEN);
+        PatientRecord thirdPatient = new PatientRecord('F', 67, TriageLevel.YELLOW);
+        PatientRecord fourthPatient = new PatientRecord('X', 34, TriageLevel.RED);
+        PatientRecord fifthPatient = new PatientRecord('M', 65, TriageLevel.GREEN);
+        PatientRecord sixthPatient = new PatientRecord('F', 86, TriageLevel.RED);
+
+        priorityCare.addPatient(firstPatient);
+        priorityCare.addPatient(thirdPatient);
+        priorityCare.addPatient(secondPatient);
+        priorityCare.addPatient(fourthPatient);
+        priorityCare.addPatient(sixthPatient);
+        priorityCare.addPatient(fifthPatient);
+
+        try {
+            // 1. Re-triage to a higher and to a lower priority
+            priorityCare.updateTriage(fifthPatient.CASE_NUMBER, TriageLevel.RED);
+            priorityCare.updateTriage(fourthPatient.CASE_NUMBER, TriageLevel.GREEN);
+            String expected = "26506: 65M (RED) - not seen\n"
+                    + "18607: 86F (RED) - not seen\n"
+                    + "16704: 67F (YELLOW) - not seen\n"
+                    + "35402: 54X (GREEN) - not seen\n"
+                    + "22303: 23M (GREEN) - not seen\n"
+                    + "33405: 34X (GREEN) - not seen\n";
+            if (!priorityCare.toString().equals(expected)) {
+                return false;
+            }
+
+            // 2. Removal by CASE_NUMBER
+            if (priorityCare.remove(thirdPatient.CASE_NUMBER) != thirdPatient
+                    || priorityCare.remove(sixthPatient.CASE_NUMBER) != sixthPatient
+                    || priorityCare.size() != 4) {
+                return false;
+            }
+            expected = "26506: 65M (RED) - not seen\n"
+                    + "35402: 54X (GREEN) - not seen\n"
+                    + "22303: 23M (GREEN) - not seen\n"
+                    + "33405: 34X (GREEN) - not seen\n";
+            if (!priorityCare.toString().equals(expected)) {
+                return false;
+            }
+
+            // 3. Unknown CASE_NUMBER
+            try {
+                priorityCare.remove(thirdPatient.CASE_NUMBER);
+                return false;
+            } catch (NoSuchElementException e) {
+
+            }
+            try {
+                priorityCare.updateTriage(12345, TriageLevel.RED);
+                return false;
+            } catch (NoSuchElementException e) {
+
+            }
+        } catch (Exception e) {
+            return false;
+        }
+
+        // 4. Random re-triages and removals on a larger queue
+        Random random = new Random(17);
+        TriageLevel[] levels = TriageLevel.values();
+        PriorityCareAdmissions large = new PriorityCareAdmissions(99, 4);
+        PatientRecord[] records = new PatientRecord[99];
+        PatientRecord.resetCounter();
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new PatientRecord('F', 30, levels[random.nextInt(levels.length)]);
+            large.addPatient(records[i]);
+        }
+        try {
+            for (int i = 0; i < records.length; i++) {
+                if (i % 3 == 0) {
+                    large.remove(records[i].CASE_NUMBER);
+                } else {
+                    large.updateTriage(records[i].CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                }
+            }
+            if (large.size() != 66) {
+                return false;
+            }
+            PatientRecord previous = large.removeBestRecord();
+            while (!large.isEmpty()) {
+                PatientRecord current = large.removeBestRecord();
+                if (previous.compareTo(current) > 0) {
+                    return false;
+                }
+                previous = current;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the CASE_NUMBER lookups of src.PriorityCareAdmissions: contains(), get() and positionOf().
+     * They must find every waiting src.PatientRecord at its current index in the array-heap while
+     * PatientRecords are added, removed and moved, and must not find PatientRecords which left the
+     * queue. Also checks that PatientRecords having the same CASE_NUMBER have the same hash code.
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testCaseLookup() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(23);
+        TriageLevel[] levels = TriageLevel.values();
+        PriorityCareAdmissions priorityCare = new PriorityCareAdmissions(99, 2, 2.0, 99);
+        PatientRecord[] records = new PatientRecord[99];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new PatientRecord('M', 41, levels[random.nextInt(levels.length)]);
+        }
+
+        try {
+            for (int round = 0; round < 2000; round++) {
+                PatientRecord p = records[random.nextInt(records.length)];
+                int choice = random.nextInt(4);
+                if (!priorityCare.contains(p.CASE_NUMBER)) {
+                    priorityCare.addPatient(p);
+                } else if (choice == 0) {
+                    priorityCare.remove(p.CASE_NUMBER);
+                } else if (choice == 1) {
+                    priorityCare.removeBestRecord();
+                } else {
+                    priorityCare.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                }
+
+                PatientRecord[] heap = priorityCare.arrayHeapCopy();
+                int found = 0;
+                for (PatientRecord q : records) {
+                    int position = priorityCare.positionOf(q.CASE_NUMBER);
+                    if (priorityCare.contains(q.CASE_NUMBER) != (position >= 0)) {
+                        return false;
+                    }
+                    if (position >= 0) {
+                        found++;
+                        if (heap[position] != q || priorityCare.get(q.CASE_NUMBER) != q) {
+                            return false;
+                        }
+                    } else if (priorityCare.get(q.CASE_NUMBER) != null) {
+                        return false;
+                    }
+                }
+                if (found != priorityCare.size()) {
+                    return false;
+                }
+            }
+
+            PatientRecord.resetCounter();
+            PatientRecord first = new PatientRecord('F', 20, TriageLevel.RED);
+            PatientRecord.resetCounter();
+            PatientRecord second = new PatientRecord('F', 20, TriageLevel.GREEN);
+            if (!first.equals(second) || first.hashCode() != second.hashCode()) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the allocation of orders of arrival and CASE_NUMBERs. Should implement at least the
+     * following scenarios:
+     * - PatientRecords created concurrently by several threads all get distinct orders of arrival
+     * and distinct CASE_NUMBERs
+     * - CASE_NUMBERs do not collide past the 100th patient, and keep the gender and age encoding
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testCaseNumberAllocation() {
+        PatientRecord.resetCounter();
+
+        int threadCount = 8;
+        int perThread = 20000;
+        PatientRecord[][] created = new PatientRecord[threadCount][perThread];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final PatientRecord[] mine = created[t];
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < mine.length; i++) {
+                    mine[i] = new PatientRecord('F', 27, TriageLevel.YELLOW);
+                }
+            });
+            threads[t].start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // 1. Distinct orders of arrival and CASE_NUMBERs, increasing within each thread
+            boolean[] arrivals = new boolean[threadCount * perThread + 1];
+            HashSet<Long> caseNumbers = new HashSet<Long>();
+            for (PatientRecord[] mine : created) {
+                for (int i = 0; i < mine.length; i++) {
+                    int arrival = mine[i].getArrivalOrder();
+                    if (arrival < 1 || arrival >= arrivals.length || arrivals[arrival]
+                            || (i > 0 && mine[i - 1].getArrivalOrder() >= arrival)) {
+                        return false;
+                    }
+                    arrivals[arrival] = true;
+                    if (!caseNumbers.add(mine[i].CASE_NUMBER)
+                            || !Long.toString(mine[i].CASE_NUMBER).startsWith("127")) {
+                        return false;
+                    }
+                }
+            }
+
+            // 2. Encoding past the 100th patient
+            PatientRecord.resetCounter();
+            PatientRecord first = new PatientRecord('X', 27, TriageLevel.GREEN);
+            for (int i = 0; i < 98; i++) {
+                new PatientRecord('X', 27, TriageLevel.GREEN);
+            }
+            PatientRecord hundredth = new PatientRecord('X', 27, TriageLevel.GREEN);
+            if (first.CASE_NUMBER != 32702 || hundredth.CASE_NUMBER != 327101) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.ConcurrentPriorityCareAdmissions. Should implement at least the following scenarios:
+     * - used by a single thread, it dequeues PatientRecords in the same order as
+     * src.PriorityCareAdmissions
+     * - under a multi-threaded stress test where several intake threads add PatientRecords while
+     * several clinician threads remove them, no src.PatientRecord is lost or served twice
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testConcurrentAdmissions() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(31);
+        TriageLevel[] levels = TriageLevel.values();
+
+        {
+            // 1. Single-threaded order
+            PriorityCareAdmissions heap = new PriorityCareAdmissions(1000);
+            ConcurrentPriorityCareAdmissions concurrent = new ConcurrentPriorityCareAdmissions(1000);
+            try {
+                for (int operation = 0; operation < 20000; operation++) {
+                    if (heap.isEmpty() || (heap.size() < 1000 && random.nextInt(10) < 6)) {
+                        PatientRecord p = new PatientRecord('X', random.nextInt(100),
+                                levels[random.nextInt(levels.length)]);
+                        heap.addPatient(p);
+                        concurrent.addPatient(p);
+                    } else if (heap.removeBestRecord() != concurrent.removeBestRecord()) {
+                        return false;
+                    }
+                }
+                if (heap.size() != concurrent.size() || !heap.toString().equals(concurrent.toString())) {
+                    return false;
+                }
+                concurrent.clear();
+                if (!concurrent.isEmpty()) {
+                    return false;
+                }
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        // 2. Multi-threaded stress test
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 25000;
+        int total = producers * perProducer;
+        PatientRecord.resetCounter();
+        PatientRecord[] records = new PatientRecord[total];
+        for (int i = 0; i < total; i++) {
+            records[i] = new PatientRecord('F', i % 100, levels[random.nextInt(levels.length)]);
+        }
+        ConcurrentPriorityCareAdmissions queue = new ConcurrentPriorityCareAdmissions(5000);
+        AtomicIntegerArray served = new AtomicIntegerArray(total);
+        AtomicInteger servedCount = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[producers + consumers];
+
+        for (int t = 0; t < producers; t++) {
+            final int first = t * perProducer;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (true) {
+                        try {
+                            queue.addPatient(records[i]);
+                            break;
+                        } catch (IllegalStateException e) {
+                            Thread.yield(); // full queue, wait for the clinicians
+                        }
+                    }
+                }
+            });
+        }
+        for (int t = producers; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                while (servedCount.get() < total && !failed.get()) {
+                    try {
+                        PatientRecord p = queue.removeBestRecord();
+                        if (served.getAndIncrement(p.getArrivalOrder() - 1) != 0) {
+                            failed.set(true); // served twice
+                        }
+                        servedCount.incrementAndGet();
+                    } catch (NoSuchElementException e) {
+                        Thread.yield(); // empty queue, wait for the intake desks
+                    }
+                }
+            });
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failed.get() || servedCount.get() != total || !queue.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < total; i++) {
+                if (served.get(i) != 1) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.RelaxedPriorityCareAdmissions. Should implement at least the following scenarios:
+     * - with one internal heap per triage level, it dequeues in the exact order of
+     * src.PriorityCareAdmissions
+     * - with several internal heaps per triage level, a src.PatientRecord is never dequeued while a
+     * src.PatientRecord of a higher priority triage level is waiting, and no src.PatientRecord is lost
+     * - several clinician threads draining the queue together serve each src.PatientRecord once
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testRelaxedAdmissions() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(37);
+        TriageLevel[] levels = TriageLevel.values();
+        PatientRecord[] records = new PatientRecord[20000];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new PatientRecord('M', i % 100, levels[random.nextInt(levels.length)]);
+        }
+
+        try {
+            // 1. Exact order with one heap per triage level
+            PriorityCareAdmissions heap = new PriorityCareAdmissions(records.length);
+            RelaxedPriorityCareAdmissions exact = new RelaxedPriorityCareAdmissions(records.length, 1);
+            for (PatientRecord p : records) {
+                heap.addPatient(p);
+                exact.addPatient(p);
+            }
+            if (!heap.toString().equals(exact.toString())) {
+                return false;
+            }
+            while (!heap.isEmpty()) {
+                if (heap.removeBestRecord() != exact.removeBestRecord()) {
+                    return false;
+                }
+            }
+
+            // 2. Strict triage ordering and no loss with eight heaps per triage level
+            RelaxedPriorityCareAdmissions relaxed = new RelaxedPriorityCareAdmissions(records.length, 8);
+            int[] waiting = new int[levels.length];
+            boolean[] served = new boolean[records.length];
+            int next = 0;
+            int servedCount = 0;
+            while (servedCount < records.length) {
+                if (next < records.length && (relaxed.isEmpty() || random.nextInt(10) < 6)) {
+                    relaxed.addPatient(records[next]);
+                    waiting[records[next++].getTriage().ordinal()]++;
+                } else {
+                    PatientRecord p = relaxed.removeBestRecord();
+                    int level = p.getTriage().ordinal();
+                    for (int higher = 0; higher < level; higher++) {
+                        if (waiting[higher] > 0) {
+                            return false;
+                        }
+                    }
+                    if (served[p.getArrivalOrder() - 1]) {
+                        return false;
+                    }
+                    served[p.getArrivalOrder() - 1] = true;
+                    waiting[level]--;
+                    servedCount++;
+                }
+            }
+            if (!relaxed.isEmpty()) {
+                return false;
+            }
+
+            // 3. Concurrent drain
+            for (PatientRecord p : records) {
+                relaxed.addPatient(p);
+            }
+            AtomicIntegerArray servedOnce = new AtomicIntegerArray(records.length);
+            Thread[] clinicians = new Thread[4];
+            for (int t = 0; t < clinicians.length; t++) {
+                clinicians[t] = new Thread(() -> {
+                    while (true) {
+                        try {
+                            servedOnce.incrementAndGet(relaxed.removeBestRecord().getArrivalOrder() - 1);
+                        } catch (NoSuchElementException e) {
+                            return;
+                        }
+                    }
+                });
+                clinicians[t].start();
+            }
+            for (Thread clinician : clinicians) {
+                clinician.join();
+            }
+            for (int i = 0; i < records.length; i++) {
+                if (servedOnce.get(i) != 1) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the blocking operations of src.ConcurrentPriorityCareAdmissions. Should implement at least
+     * the following scenarios:
+     * - poll() and poll(timeout, unit) return null on an empty queue, the latter after waiting
+     * - take() waits until a src.PatientRecord is added by another thread
+     * - offer(p, timeout, unit) gives up on a full queue, and succeeds once a place is released
+     * - clinician threads blocked in take() serve each src.PatientRecord added by intake threads once
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testBlockingOperations() {
+        PatientRecord.resetCounter();
+
+        try {
+            // 1. Empty queue
+            ConcurrentPriorityCareAdmissions queue = new ConcurrentPriorityCareAdmissions(2);
+            long start = System.nanoTime();
+            if (queue.poll() != null || queue.poll(50, TimeUnit.MILLISECONDS) != null
+                    || System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50)) {
+                return false;
+            }
+
+            // 2. take() waits for a src.PatientRecord
+            PatientRecord[] taken = new PatientRecord[1];
+            Thread clinician = new Thread(() -> {
+                try {
+                    taken[0] = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            clinician.start();
+            Thread.sleep(50);
+            PatientRecord red = new PatientRecord('F', 33, TriageLevel.RED);
+            queue.addPatient(red);
+            clinician.join(5000);
+            if (clinician.isAlive() || taken[0] != red || !queue.isEmpty()) {
+                return false;
+            }
+
+            // 3. offer() on a full queue
+            queue.addPatient(new PatientRecord('M', 50, TriageLevel.GREEN));
+            queue.addPatient(new PatientRecord('M', 51, TriageLevel.YELLOW));
+            PatientRecord extra = new PatientRecord('X', 52, TriageLevel.RED);
+            if (queue.offer(extra, 20, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                    queue.removeBestRecord();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            releaser.start();
+            if (!queue.offer(extra, 5, TimeUnit.SECONDS) || queue.peek() != extra) {
+                return false;
+            }
+            releaser.join();
+        } catch (Exception e) {
+            return false;
+        }
+
+        // 4. Clinicians blocked in take()
+        int producers = 3;
+        int perProducer = 10000;
+        int total = producers * perProducer;
+        PatientRecord.resetCounter();
+        PatientRecord[] records = new PatientRecord[total];
+        TriageLevel[] levels = TriageLevel.values();
+        for (int i = 0; i < total; i++) {
+            records[i] = new PatientRecord('F', i % 100, levels[i % levels.length]);
+        }
+        ConcurrentPriorityCareAdmissions queue = new ConcurrentPriorityCareAdmissions(100);
+        AtomicIntegerArray served = new AtomicIntegerArray(total);
+        AtomicInteger remaining = new AtomicInteger(total);
+        Thread[] threads = new Thread[producers + 4];
+        for (int t = 0; t < producers; t++) {
+            final int first = t * perProducer;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = first; i < first + perProducer; i++) {
+                        while (!queue.offer(records[i], 1, TimeUnit.SECONDS)) {
+                            // keep waiting for a free place
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (int t = producers; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    while (remaining.getAndDecrement() > 0) {
+                        served.incrementAndGet(queue.take().getArrivalOrder() - 1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join(30000);
+                if (thread.isAlive()) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < total; i++) {
+                if (served.get(i) != 1) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the batch drain operations drainTo() and drainLevel() of src.PriorityCareAdmissions and
+     * src.ConcurrentPriorityCareAdmissions. Should implement at least the following scenarios:
+     * - draining a few or most of the PatientRecords returns them in priority order, and leaves the
+     * remaining ones in the queue in priority order
+     * - draining a triage level removes exactly the PatientRecords of that level, in priority order
+     * - the drained PatientRecords cannot be looked up by CASE_NUMBER anymore
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testDrain() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(41);
+        TriageLevel[] levels = TriageLevel.values();
+        PatientRecord[] records = new PatientRecord[3000];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new PatientRecord('X', i % 100, levels[random.nextInt(levels.length)]);
+        }
+
+        try {
+            for (int maxElements : new int[] {0, 10, 2500, 5000}) {
+                // 1. drainTo()
+                PriorityCareAdmissions expected = new PriorityCareAdmissions(records);
+                PriorityCareAdmissions drained = new PriorityCareAdmissions(records.length, 4);
+                ConcurrentPriorityCareAdmissions concurrent =
+                        new ConcurrentPriorityCareAdmissions(records.length);
+                drained.addAll(records);
+                for (PatientRecord p : records) {
+                    concurrent.addPatient(p);
+                }
+                ArrayList<PatientRecord> list = new ArrayList<PatientRecord>();
+                ArrayList<PatientRecord> concurrentList = new ArrayList<PatientRecord>();
+                int count = drained.drainTo(list, maxElements);
+                if (count != Math.min(maxElements, records.length)
+                        || concurrent.drainTo(concurrentList, maxElements) != count
+                        || drained.size() != records.length - count) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++) {
+                    PatientRecord p = expected.removeBestRecord();
+                    if (list.get(i) != p || concurrentList.get(i) != p
+                            || drained.contains(p.CASE_NUMBER)) {
+                        return false;
+                    }
+                }
+                while (!expected.isEmpty()) {
+                    PatientRecord p = expected.removeBestRecord();
+                    if (drained.positionOf(p.CASE_NUMBER) < 0 || drained.removeBestRecord() != p
+                            || concurrent.removeBestRecord() != p) {
+                        return false;
+                    }
+                }
+            }
+
+            // 2. drainLevel()
+            PriorityCareAdmissions queue = new PriorityCareAdmissions(records);
+            java.util.List<PatientRecord> yellow = queue.drainLevel(TriageLevel.YELLOW);
+            int yellowCount = 0;
+            for (PatientRecord p : records) {
+                yellowCount += p.getTriage() == TriageLevel.YELLOW ? 1 : 0;
+            }
+            if (yellow.size() != yellowCount || queue.size() != records.length - yellowCount) {
+                return false;
+            }
+            for (int i = 0; i < yellow.size(); i++) {
+                if (yellow.get(i).getTriage() != TriageLevel.YELLOW || queue.contains(yellow.get(i).CASE_NUMBER)
+                        || (i > 0 && yellow.get(i - 1).compareTo(yellow.get(i)) >= 0)) {
+                    return false;
+                }
+            }
+            PatientRecord previous = queue.removeBestRecord();
+            while (!queue.isEmpty()) {
+                PatientRecord current = queue.removeBestRecord();
+                if (current.getTriage() == TriageLevel.YELLOW || previous.compareTo(current) > 0) {
+                    return false;
+                }
+                previous = current;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests peek(int k) of src.PriorityCareAdmissions. Should implement at least the following
+     * scenarios:
+     * - peek(k) returns the k PatientRecords which removeBestRecord() would return next, in order
+     * - peek(k) with k greater than the size returns all the PatientRecords, and peek(0) none
+     * - the queue is not modified by peek(k)
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testTopKPeek() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(15);
+        TriageLevel[] levels = TriageLevel.values();
+        try {
+            for (int arity : new int[] {2, 4, 8}) {
+                PriorityCareAdmissions queue = new PriorityCareAdmissions(500, arity);
+                for (int i = 0; i < 500; i++) {
+                    queue.addPatient(new PatientRecord('F', 30, levels[random.nextInt(levels.length)]));
+                }
+                String before = queue.toString();
+                if (!queue.peek(0).isEmpty() || queue.peek(1).get(0) != queue.peek()
+                        || queue.peek(1000).size() != 500) {
+                    return false;
+                }
+                List<PatientRecord> best = queue.peek(40);
+                if (best.size() != 40 || !queue.toString().equals(before) || queue.size() != 500) {
+                    return false;
+                }
+                for (PatientRecord p : best) {
+                    if (queue.removeBestRecord() != p) {
+                        return false;
+                    }
+                }
+            }
+
+            try {
+                new PriorityCareAdmissions(5).peek(-1);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected behavior
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the census of src.PriorityCareAdmissions and src.ConcurrentPriorityCareAdmissions.
+     * Should implement at least the following scenarios:
+     * - countByTriage() and snapshotStats() match a scan of the queue after random additions,
+     * removals, re-triages and drains
+     * - the oldest arrival of each level is the one of the first waiting record of that level
+     * - clear() and deepCopy() keep the census consistent
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testCensus() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(16);
+        TriageLevel[] levels = TriageLevel.values();
+        PriorityCareAdmissions queue = new PriorityCareAdmissions(8, 4, 2.0,
+                PriorityCareAdmissions.MAX_CAPACITY);
+        ConcurrentPriorityCareAdmissions concurrent = new ConcurrentPriorityCareAdmissions(100000);
+        ArrayList<PatientRecord> waiting = new ArrayList<PatientRecord>();
+        try {
+            TriageCensus empty = queue.snapshotStats();
+            if (empty.size() != 0 || empty.count(TriageLevel.RED) != 0) {
+                return false;
+            }
+            try {
+                empty.oldestArrival(TriageLevel.GREEN);
+                return false;
+            } catch (NoSuchElementException e) {
+                // expected behavior
+            }
+
+            for (int step = 0; step < 3000; step++) {
+                int action = random.nextInt(10);
+                if (action < 5 || waiting.isEmpty()) {
+                    PatientRecord p = new PatientRecord('M', 40, levels[random.nextInt(levels.length)]);
+                    queue.addPatient(p);
+                    waiting.add(p);
+                } else if (action < 7) {
+                    waiting.remove(queue.removeBestRecord());
+                } else if (action < 8) {
+                    PatientRecord p = waiting.get(random.nextInt(waiting.size()));
+                    queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                } else if (action < 9) {
+                    waiting.remove(queue.remove(waiting.get(random.nextInt(waiting.size())).CASE_NUMBER));
+                } else {
+                    ArrayList<PatientRecord> drained = new ArrayList<PatientRecord>();
+                    queue.drainTo(drained, random.nextInt(waiting.size() + 1));
+                    waiting.removeAll(drained);
+                }
+                if (step % 100 == 99) {
+                    waiting.removeAll(queue.drainLevel(levels[random.nextInt(levels.length)]));
+                }
+
+                TriageCensus census = step % 2 == 0 ? queue.snapshotStats()
+                        : queue.deepCopy().snapshotStats();
+                if (census.size() != waiting.size()) {
+                    return false;
+                }
+                for (TriageLevel level : levels) {
+                    int count = 0;
+                    int oldest = Integer.MAX_VALUE;
+                    for (PatientRecord p : waiting) {
+                        if (p.getTriage() == level) {
+                            count++;
+                            oldest = Math.min(oldest, p.getArrivalOrder());
+                        }
+                    }
+                    if (queue.countByTriage(level) != count || census.count(level) != count
+                            || (count > 0 && census.oldestArrival(level) != oldest)) {
+                        return false;
+                    }
+                }
+            }
+
+            queue.clear();
+            if (queue.snapshotStats().size() != 0 || queue.countByTriage(TriageLevel.YELLOW) != 0) {
+                return false;
+            }
+
+            // concurrent queue
+            PatientRecord red = new PatientRecord('F', 12, TriageLevel.RED);
+            PatientRecord green = new PatientRecord('F', 13, TriageLevel.GREEN);
+            PatientRecord red2 = new PatientRecord('F', 14, TriageLevel.RED);
+            concurrent.addPatient(red2);
+            concurrent.addPatient(green);
+            concurrent.addPatient(red);
+            TriageCensus census = concurrent.snapshotStats();
+            if (concurrent.countByTriage(TriageLevel.RED) != 2 || census.count(TriageLevel.RED) != 2
+                    || census.count(TriageLevel.YELLOW) != 0 || census.size() != 3
+                    || census.oldestArrival(TriageLevel.RED) != red.getArrivalOrder()
+                    || census.oldestArrival(TriageLevel.GREEN) != green.getArrivalOrder()) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests rankOf() of src.PriorityCareAdmissions and src.ConcurrentPriorityCareAdmissions. Should
+     * implement at least the following scenarios:
+     * - the rank of each waiting src.PatientRecord is its index in the priority order of the queue,
+     * after random additions, removals and re-triages
+     * - the rank of a src.PatientRecord which is not waiting raises a NoSuchElementException
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testRankOf() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(17);
+        TriageLevel[] levels = TriageLevel.values();
+        PriorityCareAdmissions queue = new PriorityCareAdmissions(4000, 4);
+        ArrayList<PatientRecord> waiting = new ArrayList<PatientRecord>();
+        try {
+            for (int step = 0; step < 2000; step++) {
+                int action = random.nextInt(10);
+                if (action < 6 || waiting.isEmpty()) {
+                    PatientRecord p = new PatientRecord('X', 70, levels[random.nextInt(levels.length)]);
+                    queue.addPatient(p);
+                    waiting.add(p);
+                } else if (action < 8) {
+                    waiting.remove(queue.removeBestRecord());
+                } else if (action < 9) {
+                    PatientRecord p = waiting.get(random.nextInt(waiting.size()));
+                    queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                } else {
+                    waiting.remove(queue.remove(waiting.get(random.nextInt(waiting.size())).CASE_NUMBER));
+                }
+
+                if (step % 50 == 0) {
+                    int rank = 0;
+                    for (PatientRecord p : queue) {
+                        if (queue.rankOf(p.CASE_NUMBER) != rank++) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            PatientRecord seen = queue.removeBestRecord();
+            try {
+                queue.rankOf(seen.CASE_NUMBER);
+                return false;
+            } catch (NoSuchElementException e) {
+                // expected behavior
+            }
+
+            ConcurrentPriorityCareAdmissions concurrent = new ConcurrentPriorityCareAdmissions(100);
+            PatientRecord green = new PatientRecord('F', 20, TriageLevel.GREEN);
+            PatientRecord red = new PatientRecord('F', 21, TriageLevel.RED);
+            PatientRecord yellow = new PatientRecord('F', 22, TriageLevel.YELLOW);
+            PatientRecord red2 = new PatientRecord('F', 23, TriageLevel.RED);
+            concurrent.addPatient(green);
+            concurrent.addPatient(red2);
+            concurrent.addPatient(yellow);
+            concurrent.addPatient(red);
+            if (concurrent.rankOf(red.CASE_NUMBER) != 0 || concurrent.rankOf(red2.CASE_NUMBER) != 1
+                    || concurrent.rankOf(yellow.CASE_NUMBER) != 2
+                    || concurrent.rankOf(green.CASE_NUMBER) != 3) {
+                return false;
+            }
+            try {
+                concurrent.rankOf(seen.CASE_NUMBER);
+                return false;
+            } catch (NoSuchElementException e) {
+                // expected behavior
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the queries of src.PriorityCareAdmissions, with and without secondary index. Should
+     * implement at least the following scenarios:
+     * - a query returns exactly the waiting PatientRecords matching it, in priority order
+     * - the index stays consistent after random additions, removals, re-triages, drains and copies
+     * - age ranges which are not aligned on the age bands of the index are filtered exactly
+     * - cells fully covered by a query are not filtered record by record, and queries on the F, M
+     * and X gender markers only skip the cells shared by the other markers
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testSecondaryIndex() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(18);
+        TriageLevel[] levels = TriageLevel.values();
+        char[] genders = {'F', 'M', 'X', '?'};
+        PatientQuery[] queries = {new PatientQuery(), new PatientQuery().ages(0, 11),
+            new PatientQuery().ages(81, Integer.MAX_VALUE).triage(TriageLevel.YELLOW),
+            new PatientQuery().genders('F', '?').triage(TriageLevel.RED, TriageLevel.GREEN),
+            new PatientQuery().ages(33, 47).genders('M')};
+        try {
+            for (int ageBandWidth : new int[] {1, 10}) {
+                PriorityCareAdmissions queue = new PriorityCareAdmissions(16, 2, 2.0,
+                        PriorityCareAdmissions.MAX_CAPACITY);
+                PriorityCareAdmissions scanned = null; // copy answering queries without index
+                for (int step = 0; step < 1500; step++) {
+                    int action = random.nextInt(10);
+                    if (action < 6 || queue.isEmpty()) {
+                        queue.addPatient(new PatientRecord(genders[random.nextInt(genders.length)],
+                                random.nextInt(100), levels[random.nextInt(levels.length)]));
+                    } else if (action < 7) {
+                        queue.removeBestRecord();
+                    } else if (action < 8) {
+                        PatientRecord p = queue.peek(queue.size()).get(random.nextInt(queue.size()));
+                        queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                    } else if (action < 9) {
+                        queue.remove(queue.peek(queue.size()).get(random.nextInt(queue.size())).CASE_NUMBER);
+                    } else {
+                        queue.drainTo(new ArrayList<PatientRecord>(), random.nextInt(queue.size() / 4 + 1));
+                    }
+                    if (step == 100) {
+                        queue.enableSecondaryIndex(ageBandWidth);
+                    }
+                    if (step > 100 && step % 50 == 0) {
+                        scanned = queue.deepCopy();
+                        if (!scanned.hasSecondaryIndex()) {
+                            return false;
+                        }
+                        scanned.disableSecondaryIndex();
+                    }
+
+                    if (step % 10 == 0) {
+                        for (PatientQuery query : queries) {
+                            List<PatientRecord> expected = new ArrayList<PatientRecord>();
+                            for (PatientRecord p : queue) {
+                                if (query.matches(p)) {
+                                    expected.add(p);
+                                }
+                            }
+                            if (!queue.query(query).equals(expected) || !queue.query(query, 3)
+                                    .equals(expected.subList(0, Math.min(3, expected.size())))) {
+                                return false;
+                            }
+                            if (step > 100 && step % 50 == 0 && !scanned.query(query).equals(expected)) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+
+                // cells fully covered by a query are never filtered record by record, and the cells
+                // shared by the other gender markers are skipped by queries on F, M and X only
+                int[] checked = new int[1];
+                PatientQuery counting = new PatientQuery() {
+                    @Override
+                    public boolean matches(PatientRecord p) {
+                        checked[0]++;
+                        return super.matches(p);
+                    }
+                };
+                if (queue.query(counting).size() != queue.size() || checked[0] != 0
+                        || queue.query(counting.genders('F', 'X')).isEmpty() || checked[0] != 0) {
+                    return false;
+                }
+
+                queue.clear();
+                if (!queue.query(new PatientQuery()).isEmpty()) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests cancel() of src.PriorityCareAdmissions. Should implement at least the following
+     * scenarios:
+     * - cancelled PatientRecords are no longer counted, found, listed or dequeued, and the other
+     * PatientRecords are dequeued in priority order
+     * - size(), the census and rankOf() stay exact while tombstones are waiting to be compacted
+     * - the compaction threshold is validated, and a threshold of 1 never compacts before the
+     * tombstones reach the root
+     * - a queue which cannot grow accepts a new src.PatientRecord as soon as one of its
+     * PatientRecords is cancelled
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testCancel() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(19);
+        TriageLevel[] levels = TriageLevel.values();
+        try {
+            for (double threshold : new double[] {0.0, 0.25, 1.0}) {
+                PriorityCareAdmissions queue = new PriorityCareAdmissions(16, 4, 2.0,
+                        PriorityCareAdmissions.MAX_CAPACITY);
+                queue.setCompactionThreshold(threshold);
+                ArrayList<PatientRecord> waiting = new ArrayList<PatientRecord>();
+                for (int step = 0; step < 3000; step++) {
+                    int action = random.nextInt(10);
+                    if (action < 5 || waiting.isEmpty()) {
+                        PatientRecord p = new PatientRecord('F', 50, levels[random.nextInt(levels.length)]);
+                        queue.addPatient(p);
+                        waiting.add(p);
+                    } else if (action < 7) {
+                        PatientRecord p = waiting.remove(random.nextInt(waiting.size()));
+                        if (queue.cancel(p.CASE_NUMBER) != p || queue.contains(p.CASE_NUMBER)) {
+                            return false;
+                        }
+                    } else if (action < 8) {
+                        PatientRecord p = waiting.get(random.nextInt(waiting.size()));
+                        queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                    } else if (action < 9) {
+                        waiting.remove(queue.removeBestRecord());
+                    } else {
+                        ArrayList<PatientRecord> drained = new ArrayList<PatientRecord>();
+                        queue.drainTo(drained, random.nextInt(waiting.size() + 1));
+                        waiting.removeAll(drained);
+                    }
+
+                    if (queue.size() != waiting.size() || queue.snapshotStats().size() != waiting.size()
+                            || queue.isEmpty() != waiting.isEmpty()) {
+                        return false;
+                    }
+                    if (step % 100 == 0) {
+                        PatientRecord[] expected = waiting.toArray(new PatientRecord[0]);
+                        Arrays.sort(expected);
+                        int rank = 0;
+                        for (PatientRecord p : queue) {
+                            if (p != expected[rank] || queue.rankOf(p.CASE_NUMBER) != rank) {
+                                return false;
+                            }
+                            rank++;
+                        }
+                        if (rank != expected.length
+                                || (expected.length > 0 && queue.peek() != expected[0])) {
+                            return false;
+                        }
+                    }
+                }
+
+                PatientRecord[] expected = waiting.toArray(new PatientRecord[0]);
+                Arrays.sort(expected);
+                if (queue.peek(expected.length + 1).size() != expected.length) {
+                    return false;
+                }
+                for (PatientRecord p : expected) {
+                    if (queue.removeBestRecord() != p) {
+                        return false;
+                    }
+                }
+                if (!queue.isEmpty()) {
+                    return false;
+                }
+            }
+
+            // the queue is compacted only once tombstones exceed the threshold
+            PriorityCareAdmissions queue = new PriorityCareAdmissions(10);
+            queue.setCompactionThreshold(0.5);
+            PatientRecord[] records = new PatientRecord[10];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = new PatientRecord('M', 30 + i, TriageLevel.YELLOW);
+                queue.addPatient(records[i]);
+            }
+            for (int i = 1; i <= 5; i++) {
+                queue.cancel(records[i].CASE_NUMBER);
+            }
+            if (queue.size() != 5 || queue.arrayHeapCopy()[5] != null
+                    || queue.positionOf(records[9].CASE_NUMBER) != 9) {
+                return false;
+            }
+            queue.cancel(records[6].CASE_NUMBER); // 6 tombstones out of 10 slots
+            if (queue.size() != 4 || queue.positionOf(records[9].CASE_NUMBER) != 3) {
+                return false;
+            }
+            try {
+                queue.setCompactionThreshold(1.5);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected behavior
+            }
+
+            // tombstones do not count against the capacity of a queue which cannot grow
+            PriorityCareAdmissions full = new PriorityCareAdmissions(4);
+            full.setCompactionThreshold(1.0);
+            for (int i = 0; i < 4; i++) {
+                full.addPatient(new PatientRecord('F', 40 + i, TriageLevel.GREEN));
+            }
+            full.cancel(full.arrayHeapCopy()[3].CASE_NUMBER);
+            PatientRecord late = new PatientRecord('M', 60, TriageLevel.RED);
+            full.addPatient(late);
+            if (full.size() != 4 || full.capacity() != 4 || full.peek() != late) {
+                return false;
+            }
+            full.cancel(full.arrayHeapCopy()[2].CASE_NUMBER);
+            full.addAll(new PatientRecord[] {new PatientRecord('X', 20, TriageLevel.GREEN)});
+            if (full.size() != 4 || full.peek() != late) {
+                return false;
+            }
+            try {
+                full.addPatient(new PatientRecord('F', 70, TriageLevel.RED));
+                return false;
+            } catch (IllegalStateException e) {
+                // expected behavior, the queue is really full
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests merge() of src.PriorityCareAdmissions. Should implement at least the following
+     * scenarios:
+     * - merging a small or a large queue returns the PatientRecords of both queues in priority
+     * order, with arrival ordering preserved across both sources, and empties the other queue
+     * - cancelled PatientRecords of the other queue are not merged
+     * - merging into a queue which is too small leaves both queues unchanged
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testMerge() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(20);
+        TriageLevel[] levels = TriageLevel.values();
+        try {
+            for (int otherSize : new int[] {0, 5, 2000}) {
+                PriorityCareAdmissions ward = new PriorityCareAdmissions(500, 2, 2.0,
+                        PriorityCareAdmissions.MAX_CAPACITY);
+                PriorityCareAdmissions clinic = new PriorityCareAdmissions(otherSize + 1, 8);
+                ArrayList<PatientRecord> all = new ArrayList<PatientRecord>();
+                for (int i = 0; i < 500 + otherSize; i++) {
+                    PatientRecord p = new PatientRecord('X', 9, levels[random.nextInt(levels.length)]);
+                    (random.nextInt(500 + otherSize) < 500 ? ward : clinic).addPatient(p);
+                    all.add(p);
+                }
+                if (clinic.size() > 2) {
+                    PatientRecord walkOut = clinic.peek(2).get(1);
+                    clinic.cancel(walkOut.CASE_NUMBER);
+                    all.remove(walkOut);
+                }
+                ward.merge(clinic);
+                if (!clinic.isEmpty() || ward.size() != all.size()
+                        || ward.countByTriage(TriageLevel.RED) + ward.countByTriage(TriageLevel.YELLOW)
+                        + ward.countByTriage(TriageLevel.GREEN) != all.size()) {
+                    return false;
+                }
+                PatientRecord[] expected = all.toArray(new PatientRecord[0]);
+                Arrays.sort(expected);
+                for (PatientRecord p : expected) {
+                    if (!ward.contains(p.CASE_NUMBER) || ward.removeBestRecord() != p) {
+                        return false;
+                    }
+                }
+            }
+
+            PriorityCareAdmissions small = new PriorityCareAdmissions(3);
+            PriorityCareAdmissions other = new PriorityCareAdmissions(3);
+            small.addPatient(new PatientRecord('F', 1, TriageLevel.GREEN));
+            small.addPatient(new PatientRecord('F', 2, TriageLevel.GREEN));
+            other.addPatient(new PatientRecord('F', 3, TriageLevel.RED));
+            other.addPatient(new PatientRecord('F', 4, TriageLevel.RED));
+            try {
+                small.merge(other);
+                return false;
+            } catch (IllegalStateException e) {
+                if (small.size() != 2 || other.size() != 2) {
+                    return false;
+                }
+            }
+            try {
+                small.merge(small);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected behavior
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.AdmissionsJournal. Should implement at least the following scenarios:
+     * - replaying the journal of random admissions, dequeues, re-triages, removals, visits and
+     * clears rebuilds the same waiting queue, seen list and patient counter, for each sync policy
+     * - a torn frame at the end of the journal is ignored and truncated, and appending can resume
+     * - a null src.PatientRecord is rejected without leaving a partial frame in the journal
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testJournal() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(21);
+        TriageLevel[] levels = TriageLevel.values();
+        Path file = null;
+        try {
+            for (AdmissionsJournal.SyncPolicy policy : AdmissionsJournal.SyncPolicy.values()) {
+                file = Files.createTempFile("admissions", ".journal");
+                Files.delete(file);
+                PriorityCareAdmissions queue = new PriorityCareAdmissions(16, 2, 2.0,
+                        PriorityCareAdmissions.MAX_CAPACITY);
+                ArrayList<PatientRecord> seen = new ArrayList<PatientRecord>();
+                try (AdmissionsJournal journal = new AdmissionsJournal(file, policy, 64, 5)) {
+                    for (int step = 0; step < 3000; step++) {
+                        int action = random.nextInt(20);
+                        if (action < 10 || queue.isEmpty()) {
+                            PatientRecord p = new PatientRecord("FMX".charAt(random.nextInt(3)),
+                                    random.nextInt(100), levels[random.nextInt(levels.length)]);
+                            queue.addPatient(p);
+                            journal.recordAdd(p);
+                        } else if (action < 15) {
+                            PatientRecord p = queue.removeBestRecord();
+                            journal.recordRemoveBest(p);
+                            if (random.nextBoolean()) {
+                                p.seePatient();
+                                journal.recordSeen(p);
+                                seen.add(0, p);
+                            }
+                        } else if (action < 17) {
+                            PatientRecord p = queue.peek(queue.size()).get(random.nextInt(queue.size()));
+                            queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                            journal.recordTriage(p);
+                        } else if (action < 19) {
+                            PatientRecord p = queue.peek(queue.size()).get(random.nextInt(queue.size()));
+                            journal.recordRemove(queue.cancel(p.CASE_NUMBER));
+                        } else if (step < 1000) {
+                            queue.clear();
+                            journal.recordClear();
+                        }
+                    }
+                }
+
+                int counter = new PatientRecord('F', 1, TriageLevel.RED).getArrivalOrder();
+                PatientRecord.resetCounter();
+                PriorityCareAdmissions recovered = new PriorityCareAdmissions(1, 2, 2.0,
+                        PriorityCareAdmissions.MAX_CAPACITY);
+                ArrayList<PatientRecord> recoveredSeen = new ArrayList<PatientRecord>();
+                AdmissionsJournal.replay(file, recovered, recoveredSeen);
+                if (!recovered.toString().equals(queue.toString())
+                        || !recoveredSeen.toString().equals(seen.toString())
+                        || new PatientRecord('F', 1, TriageLevel.RED).getArrivalOrder() != counter) {
+                    return false;
+                }
+
+                // tear the last frame, as a crash in the middle of a write would
+                PatientRecord torn = new PatientRecord('X', 3, TriageLevel.GREEN);
+                try (AdmissionsJournal journal = new AdmissionsJournal(file, policy, 64, 5)) {
+                    journal.recordAdd(torn);
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(Files.size(file) - 3);
+                }
+                PatientRecord resumed = new PatientRecord('M', 2, TriageLevel.RED);
+                try (AdmissionsJournal journal = new AdmissionsJournal(file, policy, 64, 5)) {
+                    try {
+                        journal.recordAdd(null);
+                        return false;
+                    } catch (NullPointerException e) {
+                        // expected, and nothing is appended
+                    }
+                    journal.recordAdd(resumed);
+                }
+                recovered.clear();
+                AdmissionsJournal.replay(file, recovered, new ArrayList<PatientRecord>());
+                if (recovered.size() != queue.size() + 1 || recovered.contains(torn.CASE_NUMBER)
+                        || !recovered.contains(resumed.CASE_NUMBER)) {
+                    return false;
+                }
+                Files.delete(file);
+                file = null;
+            }
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // nothing more to clean up
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.AdmissionsSnapshot. Should implement at least the following scenarios:
+     * - restoring a snapshot rebuilds the waiting queue, seen list and patient counter as they were
+     * when it was captured, even if the queue changed while it was written and a captured waiting
+     * src.PatientRecord was dequeued and seen meanwhile
+     * - the census and ranks of the restored queue match those of the captured one
+     * - a snapshot of a src.ConcurrentPriorityCareAdmissions queue restores the same PatientRecords
+     * - a corrupted snapshot file is rejected, and the queue is left unchanged
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testSnapshot() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(22);
+        TriageLevel[] levels = TriageLevel.values();
+        Path file = null;
+        try {
+            file = Files.createTempFile("admissions", ".snapshot");
+            PriorityCareAdmissions queue = new PriorityCareAdmissions(16, 2, 2.0,
+                    PriorityCareAdmissions.MAX_CAPACITY);
+            ArrayList<PatientRecord> seen = new ArrayList<PatientRecord>();
+            for (int i = 0; i < 2000; i++) {
+                queue.addPatient(new PatientRecord("FMX".charAt(random.nextInt(3)),
+                        random.nextInt(100), levels[random.nextInt(levels.length)]));
+            }
+            for (int i = 0; i < 300; i++) {
+                PatientRecord p = queue.peek(queue.size()).get(random.nextInt(queue.size()));
+                if (i % 3 == 0) {
+                    queue.cancel(p.CASE_NUMBER); // leaves tombstones
+                } else if (i % 3 == 1) {
+                    queue.updateTriage(p.CASE_NUMBER, levels[random.nextInt(levels.length)]);
+                } else {
+                    PatientRecord best = queue.removeBestRecord();
+                    best.seePatient();
+                    seen.add(0, best);
+                }
+            }
+
+            AdmissionsSnapshot snapshot = AdmissionsSnapshot.capture(queue, seen);
+            String expected = queue.toString();
+            String expectedSeen = seen.toString();
+            int counter = new PatientRecord('F', 1, TriageLevel.RED).getArrivalOrder();
+            // changes made after the capture must not appear in the snapshot
+            PatientRecord best = queue.removeBestRecord();
+            best.seePatient();
+            seen.add(0, best);
+            queue.updateTriage(queue.peek().CASE_NUMBER, TriageLevel.GREEN);
+            snapshot.writeTo(file);
+            if (snapshot.waitingCount() != queue.size() + 1
+                    || snapshot.seenCount() != seen.size() - 1) {
+                return false;
+            }
+
+            PatientRecord.resetCounter();
+            PriorityCareAdmissions restored = new PriorityCareAdmissions(1, 2, 2.0,
+                    PriorityCareAdmissions.MAX_CAPACITY);
+            ArrayList<PatientRecord> restoredSeen = new ArrayList<PatientRecord>();
+            if (AdmissionsSnapshot.restore(file, restored, restoredSeen) != snapshot.waitingCount()
+                    || !restored.toString().equals(expected)
+                    || !restoredSeen.toString().equals(expectedSeen)
+                    || new PatientRecord('F', 1, TriageLevel.RED).getArrivalOrder() != counter
+                    || !restored.contains(best.CASE_NUMBER) || restored.rankOf(best.CASE_NUMBER) != 0
+                    || restored.get(best.CASE_NUMBER).hasBeenSeen()) {
+                return false;
+            }
+            int rank = 0;
+            for (PatientRecord p : restored) {
+                if (restored.rankOf(p.CASE_NUMBER) != rank++) {
+                    return false;
+                }
+            }
+            PriorityCareAdmissions copy = new PriorityCareAdmissions(1, 2, 2.0,
+                    PriorityCareAdmissions.MAX_CAPACITY);
+            for (PatientRecord p : restored) {
+                copy.addPatient(p);
+            }
+            if (!restored.snapshotStats().toString().equals(copy.snapshotStats().toString())) {
+                return false;
+            }
+
+            // snapshot of a concurrent queue
+            ConcurrentPriorityCareAdmissions concurrent = new ConcurrentPriorityCareAdmissions(100);
+            PriorityCareAdmissions reference = new PriorityCareAdmissions(100);
+            for (int i = 0; i < 50; i++) {
+                PatientRecord p = new PatientRecord('M', i, levels[i % levels.length]);
+                concurrent.addPatient(p);
+                reference.addPatient(p);
+            }
+            AdmissionsSnapshot.capture(concurrent, new ArrayList<PatientRecord>()).writeTo(file);
+            restored.clear();
+            AdmissionsSnapshot.restore(file, restored, new ArrayList<PatientRecord>());
+            if (!restored.toString().equals(reference.toString())) {
+                return false;
+            }
+
+            // flip one byte of a record: the checksum no longer matches
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 0x10;
+            Files.write(file, bytes);
+            try {
+                AdmissionsSnapshot.restore(file, restored, new ArrayList<PatientRecord>());
+                return false;
+            } catch (IOException e) {
+                if (!restored.toString().equals(reference.toString())) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // nothing more to clean up
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.SharedAdmissionsQueue. Should implement at least the following scenarios:
+     * - a reader of the file sees the PatientRecords added and removed by the writer, in the same
+     * order as a src.PriorityCareAdmissions queue, with the same counts by triage level
+     * - a second writer and modifications through a reader are rejected, and a full queue rejects
+     * new PatientRecords
+     * - reopening the file as writer keeps the waiting PatientRecords
+     * - a reader running while the writer modifies the queue always sees a consistent heap
+     * - a writer dying in the middle of a percolation loses and duplicates no src.PatientRecord once
+     * the next writer opens the file, and readers time out meanwhile
+     * - a writer dying after placing a new src.PatientRecord never lets the next writer reuse its
+     * order of arrival and CASE_NUMBER
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testSharedQueue() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(23);
+        TriageLevel[] levels = TriageLevel.values();
+        Path file = null;
+        try {
+            file = Files.createTempFile("admissions", ".queue");
+            Files.delete(file);
+            PriorityCareAdmissions reference = new PriorityCareAdmissions(64);
+            try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64);
+                 SharedAdmissionsQueue reader = SharedAdmissionsQueue.openReader(file)) {
+                for (int step = 0; step < 2000; step++) {
+                    if (reference.size() < 64 && (random.nextInt(3) > 0 || reference.isEmpty())) {
+                        PatientRecord p = new PatientRecord("FMX".charAt(random.nextInt(3)),
+                                random.nextInt(100), levels[random.nextInt(levels.length)]);
+                        writer.addPatient(p);
+                        reference.addPatient(p);
+                    } else if (!writer.removeBestRecord().toString()
+                            .equals(reference.removeBestRecord().toString())) {
+                        return false;
+                    }
+                    if (reader.size() != reference.size()
+                            || !reader.peek(5).toString().equals(reference.peek(5).toString())) {
+                        return false;
+                    }
+                }
+                for (TriageLevel level : levels) {
+                    if (reader.countByTriage(level) != reference.countByTriage(level)) {
+                        return false;
+                    }
+                }
+                if (!reader.peek(64).toString().equals(reference.peek(64).toString())
+                        || reader.isWriter() || !writer.isWriter() || reader.capacity() != 64) {
+                    return false;
+                }
+                try {
+                    SharedAdmissionsQueue.openWriter(file, 64).close();
+                    return false;
+                } catch (IllegalStateException e) {
+                    // expected: the file already has a writer
+                }
+                try {
+                    reader.clear();
+                    return false;
+                } catch (IllegalStateException e) {
+                    // expected: readers cannot modify the queue
+                }
+                while (writer.size() < 64) {
+                    writer.addPatient(new PatientRecord('F', 30, TriageLevel.GREEN));
+                }
+                try {
+                    writer.addPatient(new PatientRecord('F', 30, TriageLevel.GREEN));
+                    return false;
+                } catch (IllegalStateException e) {
+                    if (!e.getMessage().equals("Warning: Full Admissions Queue!")) {
+                        return false;
+                    }
+                }
+            }
+
+            // reopen as writer: the waiting PatientRecords are kept
+            String before;
+            try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 8)) {
+                if (writer.capacity() != 64 || writer.size() != 64) {
+                    return false;
+                }
+                before = writer.peek(64).toString();
+                writer.clear();
+                if (!writer.isEmpty()) {
+                    return false;
+                }
+                try {
+                    writer.peek();
+                    return false;
+                } catch (NoSuchElementException e) {
+                    // expected
+                }
+            }
+            if (before.isEmpty()) {
+                return false;
+            }
+
+            // a reader thread checks the heap while the writer modifies it
+            try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64);
+                 SharedAdmissionsQueue reader = SharedAdmissionsQueue.openReader(file)) {
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicBoolean consistent = new AtomicBoolean(true);
+                Thread checker = new Thread(() -> {
+                    while (!done.get()) {
+                        List<PatientRecord> first = reader.peek(64);
+                        for (int i = 1; i < first.size(); i++) {
+                            if (first.get(i - 1).compareTo(first.get(i)) > 0) {
+                                consistent.set(false);
+                            }
+                        }
+                    }
+                });
+                checker.start();
+                for (int step = 0; step < 20000; step++) {
+                    if (writer.size() < 64 && (random.nextBoolean() || writer.isEmpty())) {
+                        writer.addPatient(new PatientRecord('M', step % 90,
+                                levels[random.nextInt(levels.length)]));
+                    } else {
+                        writer.removeBestRecord();
+                    }
+                }
+                done.set(true);
+                checker.join();
+                if (!consistent.get()) {
+                    return false;
+                }
+            }
+
+            // the writer dies while removeBestRecord() percolates the last slot down from the root,
+            // after a number of steps, possibly between a copy and the update of the hole
+            int slotLength = PatientRecordCodec.RECORD_LENGTH;
+            for (int steps = 0; steps < 12; steps++) {
+                Files.deleteIfExists(file);
+                PriorityCareAdmissions expected = new PriorityCareAdmissions(64);
+                try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64)) {
+                    for (int i = 0; i < 40; i++) {
+                        PatientRecord p = new PatientRecord('X', i, levels[random.nextInt(levels.length)]);
+                        writer.addPatient(p);
+                        expected.addPatient(p);
+                    }
+                }
+                expected.removeBestRecord();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            channel.size());
+                    byte[] record = new byte[slotLength];
+                    int last = map.getInt(SharedAdmissionsQueue.SIZE_OFFSET) - 1;
+                    map.putLong(SharedAdmissionsQueue.SEQUENCE_OFFSET,
+                            map.getLong(SharedAdmissionsQueue.SEQUENCE_OFFSET) + 1);
+                    map.get(SharedAdmissionsQueue.HEADER_LENGTH + last * slotLength, record);
+                    map.put(SharedAdmissionsQueue.STAGED_OFFSET, record);
+                    map.putInt(SharedAdmissionsQueue.HOLE_OFFSET, 0);
+                    map.putInt(SharedAdmissionsQueue.EXTENT_OFFSET, last);
+                    map.putInt(SharedAdmissionsQueue.STAGE_OFFSET, SharedAdmissionsQueue.STAGED);
+                    long key = PatientRecordCodec.priorityKey(map, SharedAdmissionsQueue.STAGED_OFFSET);
+                    int hole = 0;
+                    for (int step = 0; step < (steps + 1) / 2; step++) {
+                        int child = 2 * hole + 1;
+                        if (child >= last) {
+                            break;
+                        }
+                        int offset = SharedAdmissionsQueue.HEADER_LENGTH + child * slotLength;
+                        if (child + 1 < last && PatientRecordCodec.priorityKey(map, offset + slotLength)
+                                < PatientRecordCodec.priorityKey(map, offset)) {
+                            child++;
+                            offset += slotLength;
+                        }
+                        if (key <= PatientRecordCodec.priorityKey(map, offset)) {
+                            break;
+                        }
+                        map.get(offset, record);
+                        map.put(SharedAdmissionsQueue.HEADER_LENGTH + hole * slotLength, record);
+                        if (steps % 2 == 1 && step == (steps + 1) / 2 - 1) {
+                            break; // dies before recording the new hole
+                        }
+                        map.putInt(SharedAdmissionsQueue.HOLE_OFFSET, child);
+                        hole = child;
+                    }
+                    map.force();
+                }
+                try (SharedAdmissionsQueue reader = SharedAdmissionsQueue.openReader(file, 20)) {
+                    reader.size();
+                    return false;
+                } catch (IllegalStateException e) {
+                    // expected: the modification never completes
+                }
+                try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64)) {
+                    if (writer.size() != expected.size()
+                            || !writer.peek(64).toString().equals(expected.peek(64).toString())) {
+                        return false;
+                    }
+                    for (TriageLevel level : levels) {
+                        if (writer.countByTriage(level) != expected.countByTriage(level)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            // the writer dies once addPatient() has placed the new src.PatientRecord, before the end
+            // of the modification: the next writer never reuses its order of arrival
+            Files.deleteIfExists(file);
+            try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64)) {
+                for (int i = 0; i < 10; i++) {
+                    writer.addPatient(new PatientRecord('F', 40, levels[random.nextInt(levels.length)]));
+                }
+            }
+            PatientRecord placed = new PatientRecord('F', 40, TriageLevel.GREEN);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                int size = map.getInt(SharedAdmissionsQueue.SIZE_OFFSET);
+                map.putLong(SharedAdmissionsQueue.SEQUENCE_OFFSET,
+                        map.getLong(SharedAdmissionsQueue.SEQUENCE_OFFSET) + 1);
+                // the latest GREEN arrival has the lowest priority, so the last slot is its place
+                PatientRecordCodec.encode(map.duplicate().position(SharedAdmissionsQueue.HEADER_LENGTH
+                        + size * slotLength), placed);
+                map.putInt(SharedAdmissionsQueue.SIZE_OFFSET, size + 1);
+                map.force();
+            }
+            PatientRecord.resetCounter(); // as in a new process
+            try (SharedAdmissionsQueue writer = SharedAdmissionsQueue.openWriter(file, 64)) {
+                PatientRecord next = new PatientRecord('F', 40, TriageLevel.GREEN);
+                if (writer.size() != 11 || next.getArrivalOrder() <= placed.getArrivalOrder()
+                        || next.CASE_NUMBER == placed.CASE_NUMBER) {
+                    return false;
+                }
+                writer.addPatient(next);
+                List<PatientRecord> waiting = writer.peek(64);
+                if (!waiting.get(10).toString().equals(placed.toString())
+                        || !waiting.get(11).toString().equals(next.toString())) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // nothing more to clean up
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests src.OffHeapPriorityCareAdmissions. Should implement at least the following scenarios:
+     * - random admissions, dequeues, re-triages and removals return the same patients, in the same
+     * order, as a src.PriorityCareAdmissions queue
+     * - patients admitted with admit() get the next CASE_NUMBER and order of arrival
+     * - a full queue rejects new patients, and clear() keeps the off-heap chunks for reuse
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testOffHeap() {
+        PatientRecord.resetCounter();
+
+        Random random = new Random(24);
+        TriageLevel[] levels = TriageLevel.values();
+        OffHeapPriorityCareAdmissions offHeap = new OffHeapPriorityCareAdmissions(200_000);
+        PriorityCareAdmissions reference = new PriorityCareAdmissions(200_000);
+        ArrayList<Long> waiting = new ArrayList<Long>();
+        if (offHeap.offHeapBytes() != 0) {
+            return false;
+        }
+        for (int step = 0; step < 300_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 3 || reference.isEmpty()) {
+                PatientRecord p = new PatientRecord("FMX".charAt(random.nextInt(3)),
+                        random.nextInt(100), levels[random.nextInt(levels.length)]);
+                offHeap.addPatient(p);
+                reference.addPatient(p);
+                waiting.add(p.CASE_NUMBER);
+            } else if (action < 6) {
+                char gender = "FMX".charAt(random.nextInt(3));
+                int age = random.nextInt(100);
+                TriageLevel level = levels[random.nextInt(levels.length)];
+                long caseNumber = offHeap.admit(gender, age, level);
+                PatientRecord p = offHeap.get(caseNumber);
+                if (p == null || p.getGender() != gender || p.getAge() != age
+                        || p.getTriage() != level) {
+                    return false;
+                }
+                reference.addPatient(p);
+                waiting.add(caseNumber);
+            } else if (action < 8) {
+                if (!offHeap.removeBestRecord().toString()
+                        .equals(reference.removeBestRecord().toString())) {
+                    return false;
+                }
+            } else {
+                int i = random.nextInt(waiting.size());
+                long caseNumber = waiting.get(i);
+                waiting.set(i, waiting.get(waiting.size() - 1));
+                waiting.remove(waiting.size() - 1);
+                if (reference.contains(caseNumber) != offHeap.contains(caseNumber)) {
+                    return false;
+                }
+                if (!reference.contains(caseNumber)) {
+                    continue;
+                }
+                if (action == 8) {
+                    TriageLevel level = levels[random.nextInt(levels.length)];
+                    offHeap.updateTriage(caseNumber, level);
+                    reference.updateTriage(caseNumber, level);
+                    waiting.add(caseNumber);
+                } else if (!offHeap.remove(caseNumber).toString()
+                        .equals(reference.remove(caseNumber).toString())) {
+                    return false;
+                }
+            }
+            if (offHeap.size() != reference.size() || (!reference.isEmpty()
+                    && !offHeap.peek().toString().equals(reference.peek().toString()))) {
+                return false;
+            }
+        }
+        while (!reference.isEmpty()) {
+            if (!offHeap.removeBestRecord().toString()
+                    .equals(reference.removeBestRecord().toString())) {
+                return false;
+            }
+        }
+        if (!offHeap.isEmpty() || offHeap.offHeapBytes() == 0) {
+            return false;
+        }
+        for (int i = 0; i < 100_000; i++) {
+            offHeap.admit('X', 30, levels[random.nextInt(levels.length)]);
+        }
+        long lastCaseNumber = offHeap.admit('X', 30, TriageLevel.GREEN);
+        long grown = offHeap.offHeapBytes();
+        offHeap.clear();
+        if (offHeap.offHeapBytes() != grown || offHeap.get(lastCaseNumber) != null) {
+            return false;
+        }
+        for (int i = 0; i < 100_000; i++) {
+            offHeap.admit('X', 30, levels[random.nextInt(levels.length)]);
+        }
+        if (offHeap.offHeapBytes() != grown || offHeap.size() != 100_000) {
+            return false;
+        }
+
+        // a full queue rejects patients, and cleared chunks are reused
+        OffHeapPriorityCareAdmissions small = new OffHeapPriorityCareAdmissions(3);
+        for (int i = 0; i < 3; i++) {
+            small.admit('F', 40, TriageLevel.YELLOW);
+        }
+        try {
+            small.admit('F', 40, TriageLevel.YELLOW);
+            return false;
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().equals("Warning: Full Admissions Queue!")) {
+                return false;
+            }
+        }
+        long bytes = small.offHeapBytes();
+        small.clear();
+        long caseNumber = small.admit('M', 50, TriageLevel.RED);
+        try {
+            small.peek();
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+        return small.size() == 1 && small.offHeapBytes() == bytes
+                && small.peek().CASE_NUMBER == caseNumber && small.get(12345) == null;
+    }
+
+    /**
+     * Tests the lazy allocation of the backing arrays of src.PriorityCareAdmissions. Should
+     * implement at least the following scenarios:
+     * - a new queue allocates no array slot, and its arrays start small and double up to its
+     * capacity as PatientRecords are added
+     * - clear() empties the queue without reallocating the arrays of a fixed queue, and a growable
+     * queue goes back to its initial capacity after a surge
+     * - the queue still behaves as before: full, ordered and reusable after clear()
+     *
+     * @return true if the tester verifies a correct functionality and false if at least one bug is
+     *         detected
+     */
+    public static boolean testLazyAllocation() {
+        PatientRecord.resetCounter();
+
+        PriorityCareAdmissions queue = new PriorityCareAdmissions(1_000_000);
+        if (queue.allocatedLength() != 0 || queue.capacity() != 1_000_000 || !queue.isEmpty()
+                || queue.contains(12345) || queue.countByTriage(TriageLevel.RED) != 0) {
+            return false;
+        }
+        queue.addPatient(new PatientRecord('F', 20, TriageLevel.GREEN));
+        if (queue.allocatedLength() != 4) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            queue.addPatient(new PatientRecord('M', 30 + i, TriageLevel.YELLOW));
+        }
+        if (queue.allocatedLength() != 8 || queue.size() != 5
+                || queue.arrayHeapCopy().length != 1_000_000) {
+            return false;
+        }
+        queue.clear();
+        if (queue.allocatedLength() != 8 || !queue.isEmpty() || queue.arrayHeapCopy()[0] != null) {
+            return false;
+        }
+        PatientRecord red = new PatientRecord('X', 40, TriageLevel.RED);
+        queue.addPatient(new PatientRecord('F', 50, TriageLevel.GREEN));
+        queue.addPatient(red);
+        if (queue.peek() != red || queue.rankOf(red.CASE_NUMBER) != 0) {
+            return false;
+        }
+
+        // a small fixed queue never allocates more than its capacity
+        PriorityCareAdmissions small = new PriorityCareAdmissions(3);
+        for (int i = 0; i < 3; i++) {
+            small.addPatient(new PatientRecord('F', i, TriageLevel.GREEN));
+        }
+        if (small.allocatedLength() != 3) {
+            return false;
+        }
+        try {
+            small.addPatient(new PatientRecord('F', 9, TriageLevel.GREEN));
+            return false;
+        } catch (IllegalStateException e) {
+            // expected: the queue is full
+        }
+
+        // a growable queue releases the arrays of a surge when cleared
+        PriorityCareAdmissions growable = new PriorityCareAdmissions(2, 2, 2.0, 1000);
+        for (int i = 0; i < 100; i++) {
+            growable.addPatient(new PatientRecord('M', i, TriageLevel.YELLOW));
+        }
+        if (growable.capacity() < 100 || growable.allocatedLength() < 100) {
+            return false;
+        }
+        growable.clear();
+        if (growable.capacity() != 2 || growable.allocatedLength() != 0) {
+            return false;
+        }
+        growable.addPatient(red);
+        return growable.peek() == red && growable.allocatedLength() == 2;
+    }
+
     /**
      * Runs all the tester methods defined in this class.
      *
@@ -624,7 +3056,31 @@ public class PriorityCareTester {
                 && testPeekNonEmpty() && testAddPatientEmpty() && testAddPatientNonEmpty()
                 && testAddPatientFull() && testAddPatientNull() && testRemoveBestRecordNonEmpty()
                 && testRemoveBestRecordEmpty() && testRemoveBestRecordSizeOne() && testClear()
-                && testToString();
+                && testToString() && testBucketedAdmissionsMatchesHeapOrder()
+                && testPriorityKeyMatchesCompareTo()
+                && testArity()
+                && testPercolate()
+                && testGrowable()
+                && testAddAll()
+                && testOrderedIteration()
+                && testUpdateTriageAndRemove()
+                && testCaseLookup()
+                && testCaseNumberAllocation()
+                && testConcurrentAdmissions()
+                && testRelaxedAdmissions()
+                && testBlockingOperations()
+                && testDrain()
+                && testTopKPeek()
+                && testCensus()
+                && testRankOf()
+                && testSecondaryIndex()
+                && testCancel()
+                && testMerge()
+                && testJournal()
+                && testSnapshot()
+                && testSharedQueue()
+                && testOffHeap()
+                && testLazyAllocation();
     }
 
     /**
@@ -656,6 +3112,56 @@ public class PriorityCareTester {
                 "testRemoveBestRecordSizeOne: " + (testRemoveBestRecordSizeOne() ? "Pass" : "Failed!"));
         System.out.println("testClear: " + (testClear() ? "Pass" : "Failed!"));
         System.out.println("testToString: " + (testToString() ? "Pass" : "Failed!"));
+        System.out.println("testBucketedAdmissionsMatchesHeapOrder: "
+                + (testBucketedAdmissionsMatchesHeapOrder() ? "Pass" : "Failed!"));
+        System.out.println("testPriorityKeyMatchesCompareTo: "
+                + (testPriorityKeyMatchesCompareTo() ? "Pass" : "Failed!"));
+        System.out.println("testArity: "
+                + (testArity() ? "Pass" : "Failed!"));
+        System.out.println("testPercolate: "
+                + (testPercolate() ? "Pass" : "Failed!"));
+        System.out.println("testGrowable: "
+                + (testGrowable() ? "Pass" : "Failed!"));
+        System.out.println("testAddAll: "
+                + (testAddAll() ? "Pass" : "Failed!"));
+        System.out.println("testOrderedIteration: "
+                + (testOrderedIteration() ? "Pass" : "Failed!"));
+        System.out.println("testUpdateTriageAndRemove: "
+                + (testUpdateTriageAndRemove() ? "Pass" : "Failed!"));
+        System.out.println("testCaseLookup: "
+                + (testCaseLookup() ? "Pass" : "Failed!"));
+        System.out.println("testCaseNumberAllocation: "
+                + (testCaseNumberAllocation() ? "Pass" : "Failed!"));
+        System.out.println("testConcurrentAdmissions: "
+                + (testConcurrentAdmissions() ? "Pass" : "Failed!"));
+        System.out.println("testRelaxedAdmissions: "
+                + (testRelaxedAdmissions() ? "Pass" : "Failed!"));
+        System.out.println("testBlockingOperations: "
+                + (testBlockingOperations() ? "Pass" : "Failed!"));
+        System.out.println("testDrain: "
+                + (testDrain() ? "Pass" : "Failed!"));
+        System.out.println("testTopKPeek: "
+                + (testTopKPeek() ? "Pass" : "Failed!"));
+        System.out.println("testCensus: "
+                + (testCensus() ? "Pass" : "Failed!"));
+        System.out.println("testRankOf: "
+                + (testRankOf() ? "Pass" : "Failed!"));
+        System.out.println("testSecondaryIndex: "
+                + (testSecondaryIndex() ? "Pass" : "Failed!"));
+        System.out.println("testCancel: "
+                + (testCancel() ? "Pass" : "Failed!"));
+        System.out.println("testMerge: "
+                + (testMerge() ? "Pass" : "Failed!"));
+        System.out.println("testJournal: "
+                + (testJournal() ? "Pass" : "Failed!"));
+        System.out.println("testSnapshot: "
+                + (testSnapshot() ? "Pass" : "Failed!"));
+        System.out.println("testSharedQueue: "
+                + (testSharedQueue() ? "Pass" : "Failed!"));
+        System.out.println("testOffHeap: "
+                + (testOffHeap() ? "Pass" : "Failed!"));
+        System.out.println("testLazyAllocation: "
+                + (testLazyAllocation() ? "Pass" : "Failed!"));
     }
 
 }
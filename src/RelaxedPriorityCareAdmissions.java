@@ -0,0 +1,304 @@
+package src;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe, relaxed priority queue storing PatientRecords, designed for many clinician threads
+ * dequeuing at the same time (a "MultiQueue").
+ *
+ * The PatientRecords of each src.TriageLevel are spread over k internal src.PriorityCareAdmissions
+ * heaps, each guarded by its own lock. An addPatient() call inserts its src.PatientRecord into a
+ * randomly chosen heap of its triage level. A removeBestRecord() call looks at the roots of two
+ * randomly chosen heaps of the best non-empty triage level, and removes the better of the two. Since
+ * no single heap root is shared by all the threads, they rarely contend for the same lock.
+ *
+ * The triage ordering is strict: a src.PatientRecord is only dequeued once no src.PatientRecord
+ * of a higher priority triage level is waiting, so a RED patient is never served after a GREEN one
+ * which was waiting at the same time. Within a triage level, the order of arrival is relaxed: the
+ * dequeued src.PatientRecord is usually not the oldest one of its level, but one of the few oldest.
+ * Its rank error (the number of PatientRecords of the same level which arrived before it and are
+ * still waiting) grows with k and is measured by src.PriorityCareBenchmark. With k = 1, the queue is
+ * exact.
+ */
+public class RelaxedPriorityCareAdmissions {
+    private static final int INITIAL_HEAP_CAPACITY = 16; // initial capacity of each internal heap
+    private static final long EMPTY_ROOT = Long.MAX_VALUE; // published root key of an empty heap
+
+    private final int heapsPerLevel; // number k of internal heaps of each triage level
+    private final PriorityCareAdmissions[] heaps; // heaps of level l are at l*k .. l*k+k-1
+    private final ReentrantLock[] locks; // locks[i] guards heaps[i]
+    private final AtomicLongArray rootKeys; // priority key of the root of each heap, or EMPTY_ROOT
+    private final AtomicIntegerArray levelSizes; // number of PatientRecords of each triage level
+    private final AtomicInteger reserved; // places of this queue taken by admitted PatientRecords
+    private final int capacity; // capacity of this priority queue
+
+    /**
+     * Creates a new empty src.RelaxedPriorityCareAdmissions queue
+     *
+     * @param capacity      Capacity of this queue
+     * @param heapsPerLevel number k of internal heaps of each triage level
+     * @throws IllegalArgumentException with a descriptive error message if the capacity or the number
+     *                                  of heaps per level is not a positive integer
+     */
+    public RelaxedPriorityCareAdmissions(int capacity, int heapsPerLevel) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        if (heapsPerLevel <= 0) {
+            throw new IllegalArgumentException("Invalid number of heaps per triage level");
+        }
+        int levels = TriageLevel.values().length;
+        int heapCount = levels * heapsPerLevel;
+        this.capacity = capacity;
+        this.heapsPerLevel = heapsPerLevel;
+        this.heaps = new PriorityCareAdmissions[heapCount];
+        this.locks = new ReentrantLock[heapCount];
+        this.rootKeys = new AtomicLongArray(heapCount);
+        this.levelSizes = new AtomicIntegerArray(levels);
+        this.reserved = new AtomicInteger();
+        for (int i = 0; i < heapCount; i++) {
+            heaps[i] = new PriorityCareAdmissions(Math.min(capacity, INITIAL_HEAP_CAPACITY), 2, 2.0,
+                    capacity);
+            locks[i] = new ReentrantLock();
+            rootKeys.set(i, EMPTY_ROOT);
+        }
+    }
+
+    /**
+     * Checks whether this src.RelaxedPriorityCareAdmissions queue is empty
+     *
+     * @return {@code true} if this queue is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the size of this src.RelaxedPriorityCareAdmissions queue. While other threads modify
+     * the queue, the returned value is only an estimate.
+     *
+     * @return the total number of PatientRecords stored in this queue
+     */
+    public int size() {
+        int size = 0;
+        for (int level = 0; level < levelSizes.length(); level++) {
+            size += levelSizes.get(level);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the capacity of this src.RelaxedPriorityCareAdmissions queue
+     *
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number k of internal heaps of each triage level
+     *
+     * @return the number of internal heaps of each triage level
+     */
+    public int heapsPerLevel() {
+        return heapsPerLevel;
+    }
+
+    /**
+     * Adds the given src.PatientRecord to a randomly chosen internal heap of its triage level. If
+     * that heap is locked by another thread, another heap of the same level is tried.
+     *
+     * @param p src.PatientRecord to add to this queue
+     * @throws NullPointerException  if the given src.PatientRecord is null
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if this queue is full
+     */
+    public void addPatient(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        int taken;
+        do {
+            taken = reserved.get();
+            if (taken == capacity) {
+                throw new IllegalStateException("Warning: Full Admissions Queue!");
+            }
+        } while (!reserved.compareAndSet(taken, taken + 1));
+
+        int level = p.getTriage().ordinal();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int attempt = 0;
+        int i;
+        do {
+            i = level * heapsPerLevel + random.nextInt(heapsPerLevel);
+        } while (++attempt < heapsPerLevel && !locks[i].tryLock());
+        if (attempt == heapsPerLevel) {
+            locks[i].lock(); // every attempt met a busy heap, wait for the last one
+        }
+        try {
+            heaps[i].addPatient(p);
+            rootKeys.set(i, PriorityCareAdmissions.priorityKey(heaps[i].peek()));
+            levelSizes.incrementAndGet(level);
+        } finally {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Returns the src.PatientRecord having the highest priority in this queue, without removing it.
+     * All the internal heaps of the best non-empty triage level are examined, so the returned
+     * src.PatientRecord is the exact best one.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord peek() {
+        for (int level = 0; level < levelSizes.length(); level++) {
+            while (levelSizes.get(level) > 0) {
+                int best = -1;
+                for (int i = level * heapsPerLevel; i < (level + 1) * heapsPerLevel; i++) {
+                    if (rootKeys.get(i) != EMPTY_ROOT
+                            && (best < 0 || rootKeys.get(i) < rootKeys.get(best))) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    continue; // a concurrent addPatient() has not published its root yet
+                }
+                locks[best].lock();
+                try {
+                    if (!heaps[best].isEmpty()) {
+                        return heaps[best].peek();
+                    }
+                } finally {
+                    locks[best].unlock();
+                }
+            }
+        }
+        throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+    }
+
+    /**
+     * Removes and returns a src.PatientRecord of the best non-empty triage level: the better of the
+     * roots of two randomly chosen internal heaps of that level.
+     *
+     * @return one of the PatientRecords having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this queue is empty
+     */
+    public PatientRecord removeBestRecord() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int level = 0; level < levelSizes.length(); level++) {
+            int first = level * heapsPerLevel;
+            int failedAttempts = 0;
+            while (levelSizes.get(level) > 0) {
+                int i;
+                if (failedAttempts < 2 * heapsPerLevel) {
+                    int a = first + random.nextInt(heapsPerLevel);
+                    int b = first + random.nextInt(heapsPerLevel);
+                    i = rootKeys.get(a) <= rootKeys.get(b) ? a : b;
+                } else {
+                    i = first + (failedAttempts % heapsPerLevel); // few non-empty heaps, scan them
+                }
+                if (rootKeys.get(i) == EMPTY_ROOT || !locks[i].tryLock()) {
+                    failedAttempts++;
+                    continue;
+                }
+                try {
+                    if (!heaps[i].isEmpty()) {
+                        PatientRecord p = heaps[i].removeBestRecord();
+                        rootKeys.set(i, heaps[i].isEmpty() ? EMPTY_ROOT
+                                : PriorityCareAdmissions.priorityKey(heaps[i].peek()));
+                        levelSizes.decrementAndGet(level);
+                        reserved.decrementAndGet();
+                        return p;
+                    }
+                } finally {
+                    locks[i].unlock();
+                }
+                failedAttempts++;
+            }
+        }
+        throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+    }
+
+    /**
+     * Removes all the elements from this src.RelaxedPriorityCareAdmissions queue. All the internal
+     * heaps are locked while they are cleared.
+     */
+    public void clear() {
+        lockAll();
+        try {
+            for (int i = 0; i < heaps.length; i++) {
+                int removed = heaps[i].size();
+                heaps[i].clear();
+                rootKeys.set(i, EMPTY_ROOT);
+                levelSizes.addAndGet(i / heapsPerLevel, -removed);
+                reserved.addAndGet(-removed);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns a String representing this src.RelaxedPriorityCareAdmissions queue, where each element
+     * (src.PatientRecord) of the queue is listed on a separate line, in exact order from smallest to
+     * greatest. All the internal heaps are locked while the String is built.
+     *
+     * @return a String representing this queue, and an empty String "" if this queue is empty.
+     */
+    @Override
+    public String toString() {
+        StringBuilder patientList = new StringBuilder();
+        lockAll();
+        try {
+            for (int level = 0; level < levelSizes.length(); level++) {
+                int count = 0;
+                for (int i = level * heapsPerLevel; i < (level + 1) * heapsPerLevel; i++) {
+                    count += heaps[i].size();
+                }
+                PatientRecord[] records = new PatientRecord[count];
+                count = 0;
+                for (int i = level * heapsPerLevel; i < (level + 1) * heapsPerLevel; i++) {
+                    for (PatientRecord p : heaps[i]) {
+                        records[count++] = p;
+                    }
+                }
+                Arrays.sort(records);
+                for (PatientRecord p : records) {
+                    patientList.append(p).append('\n');
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return patientList.toString();
+    }
+
+    /**
+     * Locks all the internal heaps, in order
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Unlocks all the internal heaps, in reverse order
+     */
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
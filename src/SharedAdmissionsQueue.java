@@ -0,0 +1,727 @@
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary min-heap of PatientRecords stored in a memory-mapped file, so that several processes share
+ * the same live queue: one process admits and dequeues patients, and any number of other processes
+ * peek, count and list the waiting patients by reading the mapped file directly, without any
+ * serialization round-trip.
+ *
+ * The file holds a header followed by capacity fixed-size slots, each holding one src.PatientRecord
+ * encoded with src.PatientRecordCodec. The slots in use form an array min-heap ordered by priority
+ * key, exactly like the array-heap of a src.PriorityCareAdmissions queue. The header holds a magic
+ * number, the version of the format, the capacity, the size of the heap, a sequence number, the
+ * patient counter of the writer, the number of waiting PatientRecords of each triage level, and
+ * the staging area of the percolation in progress, if any.
+ *
+ * There is a single writer, which holds an exclusive lock on the file. Readers never lock: they
+ * follow a seqlock protocol. The writer makes the sequence number odd before each modification, and
+ * even again after it. A reader reads the sequence number, waits while it is odd, reads what it
+ * needs straight from the mapped file, then reads the sequence number again; if it changed, the
+ * writer interfered and the read is retried. Small reads such as peek() or size() are therefore
+ * zero-copy and never block the writer. A reader spins briefly, then backs off, and gives up with
+ * an IllegalStateException if the sequence number stays odd longer than its read timeout.
+ *
+ * The writer can die at any point of a modification without losing or duplicating a
+ * src.PatientRecord. Before a percolation, the src.PatientRecord to percolate is copied to the
+ * staging area of the header, with the index of the hole it percolates from and the number of slots
+ * in play. Each step of the percolation copies a src.PatientRecord into the hole, then records its
+ * former slot as the new hole, and the size of the heap is only written once the staged
+ * src.PatientRecord has been placed. At any time, the waiting PatientRecords are therefore the slots
+ * in play except the hole, plus the staged src.PatientRecord. If the writer dies in the middle of a
+ * modification, the sequence number stays odd, and readers wait until a new writer opens the file
+ * or their read times out. The new writer puts the staged src.PatientRecord back into the hole,
+ * rebuilds the heap and the counts from the slots in use, then makes the sequence number even
+ * again.
+ */
+public class SharedAdmissionsQueue implements Closeable {
+    private static final int MAGIC = 0x50434151; // "PCAQ", first bytes of a shared queue file
+    private static final int VERSION = 2; // version of the shared queue format
+    private static final int CAPACITY_OFFSET = 8; // offset of the capacity in the header
+    static final int SIZE_OFFSET = 12; // offset of the size of the heap in the header
+    static final int SEQUENCE_OFFSET = 16; // offset of the sequence number in the header
+    private static final int COUNTER_OFFSET = 24; // offset of the patient counter in the header
+    private static final int COUNTS_OFFSET = 28; // offset of the counts per triage level
+    static final int STAGE_OFFSET = 48; // offset of IDLE, or STAGED during a percolation
+    static final int HOLE_OFFSET = 52; // offset of the index of the hole of the percolation
+    static final int EXTENT_OFFSET = 56; // offset of the number of slots in play
+    static final int STAGED_OFFSET = 60; // offset of the src.PatientRecord being percolated
+    static final int HEADER_LENGTH = 96; // length of the header, the slots follow it
+    static final int IDLE = 0; // no percolation in progress
+    static final int STAGED = 1; // a percolation is in progress, its record is staged
+    private static final int SLOT_LENGTH = PatientRecordCodec.RECORD_LENGTH; // length of a slot
+    private static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN); // atomic access to the sequence number
+    private static final int READ_SPINS = 1000; // busy spins of a reader before it backs off
+    private static final long MAX_BACKOFF_NANOS = 1_000_000; // longest pause between two checks
+
+    /**
+     * Default time a reader waits for a modification in progress to complete, in milliseconds
+     */
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Greatest capacity of a shared queue, so that its file can be mapped in a single region
+     */
+    public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_LENGTH) / SLOT_LENGTH;
+
+    private final FileChannel channel; // channel of the mapped file
+    private final MappedByteBuffer buffer; // mapping of the whole file
+    private final FileLock writerLock; // exclusive lock of the writer, or null for a reader
+    private final int capacity; // number of slots of the file
+    private final int levelCount; // number of triage levels
+    private final long readTimeoutNanos; // longest wait of a read for a modification to complete
+    private final byte[] shifted; // slot being copied by the writer
+    private long sequence; // last sequence number written, used by the writer only
+
+    /**
+     * Creates a view of an opened shared queue file
+     *
+     * @param channel          channel of the file
+     * @param buffer           mapping of the whole file
+     * @param writerLock       exclusive lock of the writer, or null for a reader
+     * @param readTimeoutNanos longest wait of a read for a modification to complete
+     */
+    private SharedAdmissionsQueue(FileChannel channel, MappedByteBuffer buffer,
+                                  FileLock writerLock, long readTimeoutNanos) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writerLock = writerLock;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.levelCount = TriageLevel.values().length;
+        this.readTimeoutNanos = readTimeoutNanos;
+        this.shifted = new byte[SLOT_LENGTH];
+    }
+
+    /**
+     * Opens the given shared queue file as its writer, creating it with the given capacity if it does
+     * not exist yet. An existing file keeps its own capacity and waiting PatientRecords, and the
+     * patient counter of this process is advanced to the one recorded in the file.
+     *
+     * @param file     path of the shared queue file
+     * @param capacity number of slots of the file, used only if it is created
+     * @return the writer of the shared queue
+     * @throws IllegalArgumentException with a descriptive error message if capacity is not between
+     *                                  1 and MAX_CAPACITY
+     * @throws IllegalStateException    if another writer has the file opened
+     * @throws IOException              if the file cannot be opened or is not a shared queue file
+     */
+    public static SharedAdmissionsQueue openWriter(Path file, int capacity) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock(0, HEADER_LENGTH, false);
+            } catch (OverlappingFileLockException e) {
+                lock = null; // already locked by this process
+            }
+            if (lock == null) {
+                throw new IllegalStateException("Shared admissions queue already has a writer");
+            }
+            boolean created = channel.size() == 0;
+            if (created) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION)
+                        .putInt(capacity).putInt(0).putLong(0)
+                        .putInt(PatientRecord.currentCounter());
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.write(ByteBuffer.allocate(1),
+                        HEADER_LENGTH + (long) capacity * SLOT_LENGTH - 1);
+                channel.force(true);
+            }
+            SharedAdmissionsQueue queue = new SharedAdmissionsQueue(channel,
+                    map(file, channel, FileChannel.MapMode.READ_WRITE), lock,
+                    DEFAULT_READ_TIMEOUT_MILLIS * 1_000_000);
+            queue.recover();
+            return queue;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the given shared queue file as a reader, waiting at most DEFAULT_READ_TIMEOUT_MILLIS
+     * for a modification in progress. Readers can call every method of this class except the ones
+     * modifying the queue.
+     *
+     * @param file path of the shared queue file
+     * @return a reader of the shared queue
+     * @throws IOException if the file cannot be opened or is not a shared queue file
+     */
+    public static SharedAdmissionsQueue openReader(Path file) throws IOException {
+        return openReader(file, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Opens the given shared queue file as a reader. Readers can call every method of this class
+     * except the ones modifying the queue.
+     *
+     * @param file          path of the shared queue file
+     * @param timeoutMillis longest wait of a read for a modification in progress to complete, in
+     *                      milliseconds, after which the read throws an IllegalStateException
+     * @return a reader of the shared queue
+     * @throws IllegalArgumentException with a descriptive error message if timeoutMillis is
+     *                                  negative
+     * @throws IOException              if the file cannot be opened or is not a shared queue file
+     */
+    public static SharedAdmissionsQueue openReader(Path file, long timeoutMillis)
+            throws IOException {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid read timeout");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SharedAdmissionsQueue(channel,
+                    map(file, channel, FileChannel.MapMode.READ_ONLY), null,
+                    Math.min(timeoutMillis, Long.MAX_VALUE / 2_000_000) * 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a whole shared queue file, after checking its header
+     *
+     * @param file    path of the file
+     * @param channel channel of the file
+     * @param mode    mapping mode
+     * @return the mapping of the file
+     * @throws IOException if the file cannot be mapped or is not a shared queue file
+     */
+    private static MappedByteBuffer map(Path file, FileChannel channel, FileChannel.MapMode mode)
+            throws IOException {
+        long length = channel.size();
+        if (length < HEADER_LENGTH || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid shared admissions queue file: " + file);
+        }
+        MappedByteBuffer buffer = channel.map(mode, 0, length);
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || capacity <= 0
+                || length != HEADER_LENGTH + (long) capacity * SLOT_LENGTH) {
+            throw new IOException("Invalid shared admissions queue file: " + file);
+        }
+        return buffer;
+    }
+
+    /**
+     * Restores the patient counter of this process from the file, and repairs the heap if the
+     * previous writer died in the middle of a modification: the staged src.PatientRecord, if any,
+     * is put back into the hole, then the heap is rebuilt with staged percolations, so that this
+     * repair can itself be interrupted and resumed. The patient counter is advanced past the order
+     * of arrival of every waiting src.PatientRecord, in case it was not written before the writer
+     * died.
+     */
+    private void recover() {
+        PatientRecord.restoreCounter(buffer.getInt(COUNTER_OFFSET));
+        sequence = (long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET);
+        if ((sequence & 1) == 0) {
+            return;
+        }
+        if (buffer.getInt(STAGE_OFFSET) == STAGED) {
+            int extent = Math.min(Math.max(buffer.getInt(EXTENT_OFFSET), 0), capacity);
+            int hole = buffer.getInt(HOLE_OFFSET);
+            if (hole >= 0 && hole < extent) {
+                place(hole, extent);
+            } else {
+                buffer.putInt(STAGE_OFFSET, IDLE);
+            }
+        }
+        int size = Math.min(Math.max(buffer.getInt(SIZE_OFFSET), 0), capacity);
+        buffer.putInt(SIZE_OFFSET, size);
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            buffer.get(slot(i), shifted);
+            buffer.put(STAGED_OFFSET, shifted);
+            stage(i, size);
+            siftDown(i, size, PatientRecordCodec.priorityKey(buffer, STAGED_OFFSET));
+        }
+        for (int level = 0; level < levelCount; level++) {
+            buffer.putInt(COUNTS_OFFSET + 4 * level, 0);
+        }
+        int counter = buffer.getInt(COUNTER_OFFSET);
+        for (int i = 0; i < size; i++) {
+            int level = buffer.get(slot(i) + PatientRecordCodec.ORDINAL_OFFSET);
+            buffer.putInt(COUNTS_OFFSET + 4 * level, buffer.getInt(COUNTS_OFFSET + 4 * level) + 1);
+            counter = Math.max(counter,
+                    buffer.getInt(slot(i) + PatientRecordCodec.ARRIVAL_OFFSET) + 1);
+        }
+        PatientRecord.restoreCounter(counter);
+        buffer.putInt(COUNTER_OFFSET, counter);
+        sequence++;
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * Returns the number of slots of this shared queue
+     *
+     * @return the capacity of this shared queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks whether this shared queue is opened by its writer
+     *
+     * @return {@code true} if this shared queue was opened with openWriter()
+     */
+    public boolean isWriter() {
+        return writerLock != null;
+    }
+
+    /**
+     * Returns the number of PatientRecords waiting in this shared queue
+     *
+     * @return the size of this shared queue
+     */
+    public int size() {
+        while (true) {
+            long seen = beginRead();
+            int size = buffer.getInt(SIZE_OFFSET);
+            if (endRead(seen)) {
+                return size;
+            }
+        }
+    }
+
+    /**
+     * Checks whether this shared queue is empty
+     *
+     * @return {@code true} if no src.PatientRecord is waiting in this shared queue
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of PatientRecords of the given triage level waiting in this shared queue
+     *
+     * @param level triage level to count
+     * @return the number of waiting PatientRecords of this triage level
+     */
+    public int countByTriage(TriageLevel level) {
+        while (true) {
+            long seen = beginRead();
+            int count = buffer.getInt(COUNTS_OFFSET + 4 * level.ordinal());
+            if (endRead(seen)) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the src.PatientRecord having the highest priority in this shared queue
+     *
+     * @return the src.PatientRecord at the root of this shared queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this shared queue is empty
+     */
+    public PatientRecord peek() {
+        List<PatientRecord> best = peek(1);
+        if (best.isEmpty()) {
+            throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+        }
+        return best.get(0);
+    }
+
+    /**
+     * Returns copies of the k PatientRecords having the highest priority in this shared queue, in
+     * priority order, or of all of them if fewer than k are waiting. The heap is walked in place,
+     * keeping a frontier of the slots whose parents were already listed, in O(k log k) time.
+     *
+     * @param k maximum number of PatientRecords to list
+     * @return the k first PatientRecords of this shared queue, in priority order
+     * @throws IllegalArgumentException with a descriptive error message if k is negative
+     */
+    public List<PatientRecord> peek(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid number of PatientRecords");
+        }
+        while (true) {
+            long seen = beginRead();
+            try {
+                List<PatientRecord> first = listFirst(k);
+                if (endRead(seen)) {
+                    return first;
+                }
+            } catch (RuntimeException e) {
+                if (endRead(seen)) {
+                    throw e; // not caused by a concurrent modification
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the k first PatientRecords of the heap, without checking the sequence number
+     *
+     * @param k maximum number of PatientRecords to list
+     * @return the k first PatientRecords of the heap, in priority order
+     */
+    private List<PatientRecord> listFirst(int k) {
+        int size = Math.min(Math.max(buffer.getInt(SIZE_OFFSET), 0), capacity);
+        int count = Math.min(k, size);
+        List<PatientRecord> first = new ArrayList<PatientRecord>(count);
+        // each listed slot adds at most two children to the frontier, so it never exceeds count + 1
+        int[] frontier = new int[count + 1]; // min-heap of slot indexes, by priority key
+        long[] frontierKeys = new long[count + 1]; // priority key of each slot of the frontier
+        int frontierSize = 0;
+        if (count > 0) {
+            frontier[frontierSize] = 0;
+            frontierKeys[frontierSize++] = PatientRecordCodec.priorityKey(buffer, slot(0));
+        }
+        ByteBuffer view = buffer.duplicate();
+        while (first.size() < count) {
+            int index = frontier[0];
+            first.add(PatientRecordCodec.decode(view.position(slot(index))));
+            frontierSize--;
+            frontier[0] = frontier[frontierSize];
+            frontierKeys[0] = frontierKeys[frontierSize];
+            siftDownFrontier(frontier, frontierKeys, frontierSize);
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                int hole = frontierSize++;
+                long key = PatientRecordCodec.priorityKey(buffer, slot(child));
+                while (hole > 0 && frontierKeys[(hole - 1) / 2] > key) {
+                    frontier[hole] = frontier[(hole - 1) / 2];
+                    frontierKeys[hole] = frontierKeys[(hole - 1) / 2];
+                    hole = (hole - 1) / 2;
+                }
+                frontier[hole] = child;
+                frontierKeys[hole] = key;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Moves the root of the frontier down to its place
+     *
+     * @param frontier     min-heap of slot indexes
+     * @param frontierKeys priority key of each slot of the frontier
+     * @param size         number of slots in the frontier
+     */
+    private static void siftDownFrontier(int[] frontier, long[] frontierKeys, int size) {
+        if (size == 0) {
+            return;
+        }
+        int index = frontier[0];
+        long key = frontierKeys[0];
+        int hole = 0;
+        int child;
+        while ((child = 2 * hole + 1) < size) {
+            if (child + 1 < size && frontierKeys[child + 1] < frontierKeys[child]) {
+                child++;
+            }
+            if (key <= frontierKeys[child]) {
+                break;
+            }
+            frontier[hole] = frontier[child];
+            frontierKeys[hole] = frontierKeys[child];
+            hole = child;
+        }
+        frontier[hole] = index;
+        frontierKeys[hole] = key;
+    }
+
+    /**
+     * Adds the given src.PatientRecord to this shared queue
+     *
+     * @param p src.PatientRecord to add
+     * @throws NullPointerException  if p is null
+     * @throws IllegalStateException with the exact error message "Warning: Full Admissions Queue!" if
+     *                               this shared queue is full, or if it was opened as a reader
+     */
+    public synchronized void addPatient(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        checkWriter();
+        int size = buffer.getInt(SIZE_OFFSET);
+        if (size == capacity) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+        PatientRecordCodec.encode(ByteBuffer.wrap(shifted), p);
+        beginWrite();
+        buffer.putInt(COUNTER_OFFSET, Math.max(buffer.getInt(COUNTER_OFFSET),
+                PatientRecord.currentCounter()));
+        buffer.put(STAGED_OFFSET, shifted);
+        stage(size, size + 1);
+        siftUp(size, size + 1, PriorityCareAdmissions.priorityKey(p));
+        addToCount(p.getTriage().ordinal(), 1);
+        endWrite();
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this shared queue
+     *
+     * @return the removed src.PatientRecord
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this shared queue is empty
+     * @throws IllegalStateException  if this shared queue was opened as a reader
+     */
+    public synchronized PatientRecord removeBestRecord() {
+        checkWriter();
+        int size = buffer.getInt(SIZE_OFFSET);
+        if (size == 0) {
+            throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+        }
+        PatientRecord best = PatientRecordCodec.decode(buffer.duplicate().position(slot(0)));
+        beginWrite();
+        size--;
+        if (size > 0) {
+            // the last slot is staged and leaves the slots in play, the root is the hole
+            buffer.get(slot(size), shifted);
+            buffer.put(STAGED_OFFSET, shifted);
+            stage(0, size);
+            siftDown(0, size, PatientRecordCodec.priorityKey(buffer, STAGED_OFFSET));
+        } else {
+            buffer.putInt(SIZE_OFFSET, 0);
+        }
+        addToCount(best.getTriage().ordinal(), -1);
+        endWrite();
+        return best;
+    }
+
+    /**
+     * Removes all the PatientRecords from this shared queue, in O(1) time
+     *
+     * @throws IllegalStateException if this shared queue was opened as a reader
+     */
+    public synchronized void clear() {
+        checkWriter();
+        beginWrite();
+        buffer.putInt(SIZE_OFFSET, 0);
+        for (int level = 0; level < levelCount; level++) {
+            buffer.putInt(COUNTS_OFFSET + 4 * level, 0);
+        }
+        endWrite();
+    }
+
+    /**
+     * Closes this shared queue, releasing the lock of the writer. The file and its waiting
+     * PatientRecords are kept.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (writerLock != null && writerLock.isValid()) {
+                buffer.force();
+                writerLock.release();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Starts a staged percolation of the src.PatientRecord written in the staging area. From then
+     * on, the waiting PatientRecords are the slots in play except the hole, plus the staged one.
+     *
+     * @param hole   index of the slot the percolation starts from, whose content is not waiting
+     * @param extent number of slots in play, which becomes the size of the heap once the staged
+     *               src.PatientRecord is placed
+     */
+    private void stage(int hole, int extent) {
+        buffer.putInt(HOLE_OFFSET, hole);
+        buffer.putInt(EXTENT_OFFSET, extent);
+        VarHandle.storeStoreFence();
+        buffer.putInt(STAGE_OFFSET, STAGED);
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Copies a slot into the hole of a staged percolation, then makes that slot the new hole
+     *
+     * @param from index of the slot to copy
+     * @param hole index of the current hole
+     */
+    private void fill(int from, int hole) {
+        buffer.get(slot(from), shifted);
+        buffer.put(slot(hole), shifted);
+        VarHandle.storeStoreFence();
+        buffer.putInt(HOLE_OFFSET, from);
+    }
+
+    /**
+     * Completes a staged percolation: copies the staged src.PatientRecord into the hole, sets the
+     * size of the heap to the number of slots in play, and clears the staging area
+     *
+     * @param hole   index of the hole
+     * @param extent number of slots in play
+     */
+    private void place(int hole, int extent) {
+        buffer.get(STAGED_OFFSET, shifted);
+        buffer.put(slot(hole), shifted);
+        buffer.putInt(SIZE_OFFSET, extent);
+        VarHandle.storeStoreFence();
+        buffer.putInt(STAGE_OFFSET, IDLE);
+    }
+
+    /**
+     * Moves the staged src.PatientRecord up from the hole to its place, and completes the
+     * percolation
+     *
+     * @param hole   index of the hole to start from
+     * @param extent number of slots in play
+     * @param key    priority key of the staged src.PatientRecord
+     */
+    private void siftUp(int hole, int extent, long key) {
+        while (hole > 0) {
+            int parent = (hole - 1) / 2;
+            if (PatientRecordCodec.priorityKey(buffer, slot(parent)) <= key) {
+                break;
+            }
+            fill(parent, hole);
+            hole = parent;
+        }
+        place(hole, extent);
+    }
+
+    /**
+     * Moves the staged src.PatientRecord down from the hole to its place, and completes the
+     * percolation
+     *
+     * @param hole index of the hole to start from
+     * @param size number of slots in play
+     * @param key  priority key of the staged src.PatientRecord
+     */
+    private void siftDown(int hole, int size, long key) {
+        int child;
+        while ((child = 2 * hole + 1) < size) {
+            long childKey = PatientRecordCodec.priorityKey(buffer, slot(child));
+            if (child + 1 < size) {
+                long rightKey = PatientRecordCodec.priorityKey(buffer, slot(child + 1));
+                if (rightKey < childKey) {
+                    child++;
+                    childKey = rightKey;
+                }
+            }
+            if (key <= childKey) {
+                break;
+            }
+            fill(child, hole);
+            hole = child;
+        }
+        place(hole, size);
+    }
+
+    /**
+     * Adds the given amount to the count of a triage level in the header
+     *
+     * @param level  ordinal of the triage level
+     * @param amount amount to add
+     */
+    private void addToCount(int level, int amount) {
+        int offset = COUNTS_OFFSET + 4 * level;
+        buffer.putInt(offset, buffer.getInt(offset) + amount);
+    }
+
+    /**
+     * Returns the offset in the file of the slot of the given index
+     *
+     * @param index index of a slot
+     * @return the offset of the slot
+     */
+    private static int slot(int index) {
+        return HEADER_LENGTH + index * SLOT_LENGTH;
+    }
+
+    /**
+     * Checks that this shared queue was opened by its writer
+     *
+     * @throws IllegalStateException if this shared queue was opened as a reader
+     */
+    private void checkWriter() {
+        if (writerLock == null) {
+            throw new IllegalStateException("Read-only shared admissions queue");
+        }
+    }
+
+    /**
+     * Makes the sequence number odd, before a modification. The store fence keeps the writes of the
+     * modification from being seen before the odd sequence number.
+     */
+    private void beginWrite() {
+        sequence++;
+        SEQUENCE.setOpaque(buffer, SEQUENCE_OFFSET, sequence);
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Makes the sequence number even again, after a modification, releasing its writes
+     */
+    private void endWrite() {
+        sequence++;
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * Waits until no modification is in progress, and returns the sequence number. The reader
+     * spins READ_SPINS times, then parks for exponentially longer pauses, up to MAX_BACKOFF_NANOS,
+     * until the read timeout expires.
+     *
+     * @return the even sequence number a read starts from
+     * @throws IllegalStateException if a modification is still in progress after the read timeout,
+     *                               for instance because the writer died in the middle of it
+     */
+    private long beginRead() {
+        long seen;
+        int spins = 0;
+        long backoff = 1000;
+        long deadline = 0;
+        while (((seen = (long) SEQUENCE.getAcquire(buffer, SEQUENCE_OFFSET)) & 1) != 0) {
+            if (spins < READ_SPINS) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + readTimeoutNanos;
+            } else if (now - deadline >= 0) {
+                throw new IllegalStateException("Shared admissions queue still being modified after "
+                        + readTimeoutNanos / 1_000_000 + " ms: its writer may have died");
+            }
+            LockSupport.parkNanos(backoff);
+            backoff = Math.min(2 * backoff, MAX_BACKOFF_NANOS);
+        }
+        return seen;
+    }
+
+    /**
+     * Checks whether the sequence number is unchanged since the beginning of a read, i.e. whether
+     * the values read are consistent
+     *
+     * @param seen sequence number returned by beginRead()
+     * @return {@code true} if no modification happened during the read
+     */
+    private boolean endRead(long seen) {
+        VarHandle.loadLoadFence();
+        return (long) SEQUENCE.getOpaque(buffer, SEQUENCE_OFFSET) == seen;
+    }
+}
@@ -0,0 +1,226 @@
+package src;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Bucketed implementation of a priority queue storing PatientRecords. It exposes the same public
+ * operations as src.PriorityCareAdmissions, and dequeues PatientRecords in exactly the same order
+ * (the order defined by src.PatientRecord.compareTo()), but in O(1) amortized time per operation
+ * when PatientRecords are admitted in their order of arrival.
+ *
+ * Since src.TriageLevel only defines three constants, this queue keeps one FIFO ring buffer per
+ * triage level. PatientRecords are normally admitted in their order of arrival, so appending at the
+ * tail of the bucket of their triage level keeps every bucket sorted by order of arrival. The best
+ * src.PatientRecord is then the head of the lowest non-empty bucket (RED first, then YELLOW, then
+ * GREEN).
+ *
+ * A src.PatientRecord admitted after a record of the same triage level which arrived later than it
+ * is shifted back to its correct position within the bucket, so the dequeue order stays exact.
+ * This costs O(k) time, k being the number of PatientRecords of its level which arrived later than
+ * it, so O(n) time in the worst case, when PatientRecords are admitted in reverse order of arrival.
+ *
+ * A bucket doubles when it is full, and halves when it falls to a quarter full, down to its initial
+ * length, so the memory grown during a surge is given back once the surge is drained.
+ */
+public class TriageBucketedAdmissions {
+    private static final int INITIAL_BUCKET_CAPACITY = 16; // initial length of each ring buffer
+
+    private final int initialBucketLength; // length of each ring buffer when this queue is empty
+    private PatientRecord[][] buckets; // one ring buffer per triage level, indexed by ordinal
+    private int[] heads; // index of the first src.PatientRecord of each bucket
+    private int[] counts; // number of PatientRecords stored in each bucket
+    private int size; // size of this priority queue
+    private final int capacity; // capacity of this priority queue
+
+    /**
+     * Creates a new empty src.TriageBucketedAdmissions queue with the given capacity
+     *
+     * @param capacity Capacity of this src.TriageBucketedAdmissions queue
+     * @throws IllegalArgumentException with a descriptive error message if the capacity is not a
+     *                                  positive integer
+     */
+    public TriageBucketedAdmissions(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        int levels = TriageLevel.values().length;
+        int bucketCapacity = Integer.highestOneBit(Math.min(capacity, INITIAL_BUCKET_CAPACITY));
+        if (bucketCapacity < Math.min(capacity, INITIAL_BUCKET_CAPACITY)) {
+            bucketCapacity <<= 1; // ring buffer lengths are powers of two
+        }
+        this.initialBucketLength = bucketCapacity;
+        this.capacity = capacity;
+        this.size = 0;
+        this.buckets = new PatientRecord[levels][bucketCapacity];
+        this.heads = new int[levels];
+        this.counts = new int[levels];
+    }
+
+    /**
+     * Checks whether this src.TriageBucketedAdmissions queue is empty
+     *
+     * @return {@code true} if this src.TriageBucketedAdmissions queue is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the size of this src.TriageBucketedAdmissions queue
+     *
+     * @return the total number of PatientRecords stored in this queue
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the capacity of this src.TriageBucketedAdmissions queue
+     *
+     * @return the capacity of this src.TriageBucketedAdmissions queue
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Removes all the elements from this src.TriageBucketedAdmissions queue. Buckets grown past their
+     * initial length are replaced with buckets of their initial length.
+     */
+    public void clear() {
+        for (int level = 0; level < buckets.length; level++) {
+            if (buckets[level].length > initialBucketLength) {
+                buckets[level] = new PatientRecord[initialBucketLength];
+            } else {
+                Arrays.fill(buckets[level], null);
+            }
+            heads[level] = 0;
+            counts[level] = 0;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns the src.PatientRecord having the highest priority in this queue, without removing it.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this src.TriageBucketedAdmissions queue is empty
+     */
+    public PatientRecord peek() {
+        int level = bestLevel();
+        return buckets[level][heads[level]];
+    }
+
+    /**
+     * Adds the given src.PatientRecord to the tail of the bucket of its triage level.
+     *
+     * @param p src.PatientRecord to add to this src.TriageBucketedAdmissions queue
+     * @throws NullPointerException  if the given src.PatientRecord is null
+     * @throws IllegalStateException with a the exact error message "Warning: Full Admissions Queue!"
+     *                               if this src.TriageBucketedAdmissions queue is full
+     */
+    public void addPatient(PatientRecord p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        if (size == this.capacity) {
+            throw new IllegalStateException("Warning: Full Admissions Queue!");
+        }
+
+        int level = p.getTriage().ordinal();
+        if (counts[level] == buckets[level].length) {
+            resizeBucket(level, buckets[level].length << 1);
+        }
+        PatientRecord[] bucket = buckets[level];
+        int mask = bucket.length - 1;
+        int position = counts[level];
+
+        // shift back any record of this level which arrived later than p (rare: out-of-order intake)
+        while (position > 0) {
+            PatientRecord previous = bucket[(heads[level] + position - 1) & mask];
+            if (previous.getArrivalOrder() <= p.getArrivalOrder()) {
+                break;
+            }
+            bucket[(heads[level] + position) & mask] = previous;
+            position--;
+        }
+        bucket[(heads[level] + position) & mask] = p;
+        counts[level]++;
+        size++;
+    }
+
+    /**
+     * Removes and returns the src.PatientRecord having the highest priority in this queue.
+     *
+     * @return the src.PatientRecord having the highest priority in this queue
+     * @throws NoSuchElementException with the exact error message "Warning: Empty Admissions Queue!"
+     *                                if this src.TriageBucketedAdmissions queue is empty
+     */
+    public PatientRecord removeBestRecord() {
+        int level = bestLevel();
+        PatientRecord[] bucket = buckets[level];
+        PatientRecord recordToBeRemoved = bucket[heads[level]];
+        bucket[heads[level]] = null;
+        heads[level] = (heads[level] + 1) & (bucket.length - 1);
+        counts[level]--;
+        size--;
+        if (bucket.length > initialBucketLength && counts[level] <= bucket.length >> 2) {
+            resizeBucket(level, bucket.length >> 1);
+        }
+        return recordToBeRemoved;
+    }
+
+    /**
+     * Returns a String representing this src.TriageBucketedAdmissions queue, where each element
+     * (src.PatientRecord) of the queue is listed on a separate line, in order from smallest to
+     * greatest.
+     *
+     * @return a String representing this queue, and an empty String "" if this queue is empty.
+     */
+    @Override
+    public String toString() {
+        StringBuilder patientList = new StringBuilder();
+        for (int level = 0; level < buckets.length; level++) {
+            PatientRecord[] bucket = buckets[level];
+            for (int i = 0; i < counts[level]; i++) {
+                patientList.append(bucket[(heads[level] + i) & (bucket.length - 1)]).append('\n');
+            }
+        }
+        return patientList.toString();
+    }
+
+    /**
+     * Returns the ordinal of the lowest non-empty bucket
+     *
+     * @return the ordinal of the triage level holding the src.PatientRecord with highest priority
+     * @throws NoSuchElementException if this queue is empty
+     */
+    private int bestLevel() {
+        for (int level = 0; level < counts.length; level++) {
+            if (counts[level] != 0) {
+                return level;
+            }
+        }
+        throw new NoSuchElementException("Warning: Empty Admissions Queue!");
+    }
+
+    /**
+     * Moves the ring buffer of the given level to a new ring buffer of the given length, unwrapping
+     * its contents so that the head of the bucket moves to index 0. Ring buffer lengths are always
+     * powers of two.
+     *
+     * @param level  ordinal of the triage level whose bucket is resized
+     * @param length new length of the bucket, a power of two not smaller than its count
+     */
+    private void resizeBucket(int level, int length) {
+        PatientRecord[] bucket = buckets[level];
+        PatientRecord[] resized = new PatientRecord[length];
+        for (int i = 0; i < counts[level]; i++) {
+            resized[i] = bucket[(heads[level] + i) & (bucket.length - 1)];
+        }
+        buckets[level] = resized;
+        heads[level] = 0;
+    }
+}
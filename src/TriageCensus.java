@@ -0,0 +1,83 @@
+package src;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable snapshot of the occupancy of an admissions queue: the number of waiting PatientRecords
+ * of each src.TriageLevel, and the order of arrival of the oldest waiting src.PatientRecord of each
+ * level. Snapshots are cheap to take, so a wallboard can poll many queues frequently.
+ */
+public class TriageCensus {
+    private final int[] counts; // number of waiting PatientRecords of each triage level
+    private final long[] oldestKeys; // priority key of the oldest record of each level, or -1
+
+    /**
+     * Creates a new src.TriageCensus. The given arrays are owned by the new snapshot.
+     *
+     * @param counts     number of waiting PatientRecords of each triage level, indexed by ordinal
+     * @param oldestKeys priority key of the oldest waiting src.PatientRecord of each triage level,
+     *                   or -1 if no src.PatientRecord of that level is waiting
+     */
+    TriageCensus(int[] counts, long[] oldestKeys) {
+        this.counts = counts;
+        this.oldestKeys = oldestKeys;
+    }
+
+    /**
+     * Returns the number of waiting PatientRecords of the given triage level
+     *
+     * @param level triage level to count
+     * @return the number of waiting PatientRecords of this triage level
+     */
+    public int count(TriageLevel level) {
+        return counts[level.ordinal()];
+    }
+
+    /**
+     * Returns the total number of waiting PatientRecords
+     *
+     * @return the number of waiting PatientRecords of all the triage levels
+     */
+    public int size() {
+        int size = 0;
+        for (int count : counts) {
+            size += count;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the order of arrival of the oldest waiting src.PatientRecord of the given triage level,
+     * i.e. the one of this level which will be dequeued first
+     *
+     * @param level triage level to look at
+     * @return the order of arrival of the oldest waiting src.PatientRecord of this level
+     * @throws NoSuchElementException if no src.PatientRecord of this triage level is waiting
+     */
+    public int oldestArrival(TriageLevel level) {
+        long key = oldestKeys[level.ordinal()];
+        if (key < 0) {
+            throw new NoSuchElementException("No waiting patient with triage level " + level);
+        }
+        return PriorityCareAdmissions.arrivalOf(key);
+    }
+
+    /**
+     * Returns a String representing this src.TriageCensus, one triage level per line, with its count
+     * and the order of arrival of its oldest waiting src.PatientRecord
+     *
+     * @return a String representing this census
+     */
+    @Override
+    public String toString() {
+        StringBuilder census = new StringBuilder();
+        for (TriageLevel level : TriageLevel.values()) {
+            census.append(level).append(": ").append(count(level));
+            if (count(level) > 0) {
+                census.append(" (oldest arrival ").append(oldestArrival(level)).append(')');
+            }
+            census.append('\n');
+        }
+        return census.toString();
+    }
+}